@@ -11,6 +11,7 @@ plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
     alias(libs.plugins.graalvm.native)
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -24,7 +25,16 @@ dependencies {
     implementation(libs.guava)
     implementation(libs.newpipe.extractor)
     implementation(libs.okhttp3)
+    implementation(libs.okhttp.brotli)
     implementation(libs.nanojson)
+    // @CEntryPoint API of the shared library, provided by native-image at build time
+    compileOnly(libs.graalvm.nativeimage)
+
+    // Independent CBOR and MessagePack decoders to check the output of RecordWriter
+    testImplementation(libs.junit.jupiter)
+    testImplementation(libs.jackson.dataformat.cbor)
+    testImplementation(libs.msgpack.core)
+    testRuntimeOnly(libs.junit.platform.launcher)
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -39,6 +49,17 @@ application {
     mainClass = "dev.krtirtho.libnewpipe.NewPipe"
 }
 
+// Offline benchmarks in src/jmh, run with ./gradlew :app:jmh
+jmh {
+    jmhVersion.set(libs.versions.jmhCore)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+tasks.named<Test>("test") {
+    useJUnitPlatform()
+}
+
 tasks.withType<AbstractArchiveTask>().configureEach {
     duplicatesStrategy = DuplicatesStrategy.EXCLUDE
 }
@@ -47,6 +68,73 @@ tasks.named("distTar").configure { enabled = false }
 tasks.named("distZip").configure { enabled = false }
 
 
+// Startup tuning, all opt-in:
+//   -Pnative.initAtBuildTime=true  runs the static setup of the service list and YouTube service
+//                                  while building the image instead of on every start
+//   -Pnative.pgo=instrument        builds a binary that writes default.iprof, see nativePgoProfile
+//   -Pnative.pgo=build/pgo/default.iprof  rebuilds optimized with that profile (Oracle GraalVM only)
+//
+// Memory management of the CLI binary:
+//   -Pnative.gc=epsilon (default)  never collects; fastest for one-shot lookups
+//   -Pnative.gc=serial             bounded memory for --serve, batch, paging and load tests
+//   -Pnative.gc=g1                 bounded memory with lower pauses, Linux and Oracle GraalVM only
+//   -Pnative.maxHeap=512m          default -Xmx of serial and G1 binaries, still overridable at run time
+val nativeGc = providers.gradleProperty("native.gc").getOrElse("epsilon")
+val nativeMaxHeap = providers.gradleProperty("native.maxHeap").getOrElse("512m")
+require(nativeGc in listOf("epsilon", "serial", "g1")) { "native.gc must be epsilon, serial or g1, not $nativeGc" }
+val nativeGcArgs = if (nativeGc == "epsilon") {
+    listOf("--gc=epsilon")
+} else {
+    listOf("--gc=$nativeGc", "-R:MaxHeapSize=$nativeMaxHeap")
+}
+
+val nativeInitAtBuildTime = providers.gradleProperty("native.initAtBuildTime").map { it.toBoolean() }.getOrElse(false)
+val nativePgo = providers.gradleProperty("native.pgo").orNull
+
+// Classes whose static state is immutable once initialized. The image builder refuses to store
+// threads, open connections or seeded Random instances, so a mistake here fails the build.
+val buildTimeInitClasses = listOf(
+    "dev.krtirtho.libnewpipe.NewPipe",
+    // NewPipe.RESOLVE_FIELDS
+    "dev.krtirtho.libnewpipe.Fields",
+    // NewPipe.outputFormat
+    "dev.krtirtho.libnewpipe.OutputFormat",
+    "org.schabi.newpipe.extractor.NewPipe",
+    "org.schabi.newpipe.extractor.ServiceList",
+    "org.schabi.newpipe.extractor.services.youtube.YoutubeService",
+    "org.schabi.newpipe.extractor.localization",
+    "com.grack.nanojson"
+)
+val runTimeInitClasses = listOf(
+    "dev.krtirtho.libnewpipe.NewPipe",
+    "org.schabi.newpipe.extractor.NewPipe",
+    "org.schabi.newpipe.extractor.services.youtube.YoutubeService"
+)
+
+val nativeInitArg = if (nativeInitAtBuildTime) {
+    "--initialize-at-build-time=" + buildTimeInitClasses.joinToString(",")
+} else {
+    "--initialize-at-run-time=" + runTimeInitClasses.joinToString(",")
+}
+
+// -Ob trades peak performance for build speed, which would waste a collected profile
+val nativeOptimizationArgs = when (nativePgo) {
+    null -> listOf("-Ob")
+    "instrument" -> listOf("-Ob", "--pgo-instrument")
+    else -> listOf("--pgo=" + file(nativePgo).absolutePath)
+}
+
+val nativeBuildArgs = nativeOptimizationArgs + listOf(
+    "-H:+ReportExceptionStackTraces",
+    "-H:-CheckToolchain",
+    "-H:+AllowIncompleteClasspath",
+    "-H:EnableURLProtocols=http,https",
+    "--no-fallback",
+    "-H:CCompilerOption=-fpic",
+    "-H:NativeLinkerOption=-fpic",
+    nativeInitArg
+)
+
 graalvmNative {
     binaries {
         named("main") {
@@ -58,18 +146,22 @@ graalvmNative {
             mainClass.set(application.mainClass)
             sharedLibrary.set(false)
 
-            buildArgs.addAll(listOf(
-                "-Ob",
-                "-H:+ReportExceptionStackTraces",
-                "-H:-CheckToolchain",
-                "-H:+AllowIncompleteClasspath",
-                "-H:EnableURLProtocols=http,https",
-                "--no-fallback",
-                "--gc=epsilon",
-                "-H:CCompilerOption=-fpic",
-                "-H:NativeLinkerOption=-fpic",
-                "--initialize-at-run-time=dev.krtirtho.libnewpipe.NewPipe,org.schabi.newpipe.extractor.NewPipe,org.schabi.newpipe.extractor.services.youtube.YoutubeService"
-            ))
+            buildArgs.addAll(nativeBuildArgs)
+            buildArgs.addAll(nativeGcArgs)
+        }
+
+        // libnewpipe.so with the C API of NativeApi, built by nativeSharedCompile.
+        // The isolate lives as long as the host process, so it needs a collecting GC.
+        create("shared") {
+            javaLauncher.set(javaToolchains.launcherFor {
+                languageVersion.set(JavaLanguageVersion.of(25))
+            })
+            debug.set(false)
+            imageName.set("libnewpipe")
+            sharedLibrary.set(true)
+
+            buildArgs.addAll(nativeBuildArgs)
+            buildArgs.add("--gc=serial")
         }
     }
 }
@@ -93,3 +185,136 @@ tasks.register<Zip>("zipNativeImage") {
 tasks.named("nativeCompile") {
     finalizedBy("zipNativeImage")
 }
+
+// Splits a command line into arguments like a POSIX shell: whitespace separates arguments,
+// single quotes keep everything literal, double quotes and backslashes escape.
+fun splitArguments(line: String): List<String> {
+    val args = mutableListOf<String>()
+    val current = StringBuilder()
+    var inArgument = false
+    var quote: Char? = null
+    var i = 0
+    while (i < line.length) {
+        val c = line[i]
+        when {
+            quote == '\'' -> if (c == '\'') quote = null else current.append(c)
+            c == '\\' && quote != '\'' && i + 1 < line.length -> {
+                current.append(line[++i])
+                inArgument = true
+            }
+            quote == '"' -> if (c == '"') quote = null else current.append(c)
+            c == '\'' || c == '"' -> {
+                quote = c
+                inArgument = true
+            }
+            c.isWhitespace() -> if (inArgument) {
+                args += current.toString()
+                current.setLength(0)
+                inArgument = false
+            }
+            else -> {
+                current.append(c)
+                inArgument = true
+            }
+        }
+        i++
+    }
+    require(quote == null) { "Unterminated $quote quote in: $line" }
+    if (inArgument) args += current.toString()
+    return args
+}
+
+// Offline workload for profiling and startup measurement. Record it once with
+//   NewPipeCLI --record build/replay-archive --streams <id> --search <query>
+// and override it with -Pnative.workload="--replay <dir> --search 'two words'".
+val nativeWorkload = providers.gradleProperty("native.workload").map { splitArguments(it) }
+    .getOrElse(listOf("--replay", layout.buildDirectory.dir("replay-archive").get().asFile.path, "--streams", "dQw4w9WgXcQ"))
+
+tasks.register<Exec>("nativePgoProfile") {
+    group = "build"
+    description = "Run the offline workload with a binary built with -Pnative.pgo=instrument to collect build/pgo/default.iprof"
+    dependsOn("nativeCompile")
+
+    val pgo = nativePgo
+    val pgoDir = layout.buildDirectory.dir("pgo").get().asFile
+    val profile = pgoDir.resolve("default.iprof")
+    doFirst {
+        if (pgo != "instrument") {
+            throw GradleException("nativePgoProfile needs an instrumented binary, run it with -Pnative.pgo=instrument")
+        }
+        pgoDir.mkdirs()
+        profile.delete()
+    }
+    doLast {
+        if (!profile.isFile) {
+            throw GradleException("The workload finished without writing $profile")
+        }
+        println("Profile written to $profile")
+    }
+    workingDir(pgoDir)
+    executable(nativeBinaryPath)
+    args(nativeWorkload)
+    standardOutput = java.io.OutputStream.nullOutputStream()
+}
+
+tasks.register("nativeSoakBenchmark") {
+    group = "verification"
+    description = "Run thousands of offline extractions and record RSS and heap over time to build/soak/<gc>.ndjson"
+    dependsOn("nativeCompile")
+
+    val binary = nativeBinaryPath
+    val workload = nativeWorkload
+    val soakDir = layout.buildDirectory.dir("soak").get().asFile
+    val requests = providers.gradleProperty("native.soak.requests").getOrElse("5000")
+    val output = soakDir.resolve("$nativeGc.ndjson")
+    doLast {
+        soakDir.mkdirs()
+        // The process writes the samples file itself, so no handle stays open if it fails
+        val process = ProcessBuilder(listOf(binary.absolutePath) + workload +
+                listOf("--load-test", requests, "--concurrency", "8", "--sample-interval", "1"))
+            .redirectOutput(output)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start()
+        val exitValue = process.waitFor()
+        if (exitValue != 0) {
+            throw GradleException("Soak run exited with $exitValue, partial samples in $output")
+        }
+        println("Samples written to $output")
+    }
+}
+
+tasks.register("nativeStartupBenchmark") {
+    group = "verification"
+    description = "Start the native binary repeatedly on the offline workload and report time to first result and to exit"
+    dependsOn("nativeCompile")
+
+    val binary = nativeBinaryPath
+    val workload = nativeWorkload
+    val runs = providers.gradleProperty("native.startup.runs").map { it.toInt() }.getOrElse(20)
+    doLast {
+        val firstResult = mutableListOf<Double>()
+        val exit = mutableListOf<Double>()
+        repeat(runs) {
+            val start = System.nanoTime()
+            val process = ProcessBuilder(listOf(binary.absolutePath) + workload)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start()
+            process.inputStream.use { out ->
+                out.read()
+                firstResult += (System.nanoTime() - start) / 1e6
+                out.transferTo(java.io.OutputStream.nullOutputStream())
+            }
+            process.waitFor()
+            exit += (System.nanoTime() - start) / 1e6
+        }
+
+        fun summary(values: List<Double>): String {
+            val sorted = values.sorted()
+            return "min %.1f ms, median %.1f ms, p90 %.1f ms".format(
+                sorted.first(), sorted[sorted.size / 2], sorted[(sorted.size * 9 / 10).coerceAtMost(sorted.size - 1)])
+        }
+        println("Runs: $runs")
+        println("First result: " + summary(firstResult))
+        println("Exit:         " + summary(exit))
+    }
+}
@@ -0,0 +1,138 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonAppendableWriter;
+import com.grack.nanojson.JsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting and serializing extracted objects, from the Map based {@link Convert} path
+ * to writing straight from the extractor objects with {@link StreamingConvert}.
+ * <p>
+ * Run with {@code ./gradlew :app:jmh}; the gc profiler is enabled in the build, so every result
+ * also reports {@code gc.alloc.rate.norm}, the bytes allocated per operation. The size of the
+ * produced JSON is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+    private StreamInfo streamInfo;
+    private List<InfoItem> searchPage;
+    private VideoStream videoStream;
+    private AudioStream audioStream;
+    private ItagItem itagItem;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParsingException {
+        streamInfo = Fixtures.longVideo();
+        searchPage = Fixtures.searchPage();
+        videoStream = streamInfo.getVideoOnlyStreams().get(streamInfo.getVideoOnlyStreams().size() - 1);
+        audioStream = streamInfo.getAudioStreams().get(0);
+        itagItem = videoStream.getItagItem();
+
+        System.out.println();
+        System.out.println("# Output size: streamInfo "
+                + JsonWriter.string(Convert.streamInfoMap(streamInfo)).getBytes(StandardCharsets.UTF_8).length
+                + " bytes, searchPage "
+                + JsonWriter.string(searchPage.stream().map(Convert::infoItemMap).toList()).getBytes(StandardCharsets.UTF_8).length
+                + " bytes, " + streamInfo.getVideoOnlyStreams().size() + " video-only and "
+                + streamInfo.getAudioStreams().size() + " audio streams");
+    }
+
+    @Benchmark
+    public Map<String, Object> streamInfoMap() {
+        return Convert.streamInfoMap(streamInfo);
+    }
+
+    @Benchmark
+    public String streamInfoJson() {
+        return JsonWriter.string(Convert.streamInfoMap(streamInfo));
+    }
+
+    @Benchmark
+    public void streamInfoStreaming(Blackhole blackhole) {
+        JsonAppendableWriter writer = JsonWriter.on(new BlackholeOutputStream(blackhole));
+        StreamingConvert.streamInfo(writer, null, Fields.ALL, streamInfo);
+        writer.done();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> searchPageMap() {
+        return searchPage.stream().map(Convert::infoItemMap).toList();
+    }
+
+    @Benchmark
+    public String searchPageJson() {
+        return JsonWriter.string(searchPage.stream().map(Convert::infoItemMap).toList());
+    }
+
+    @Benchmark
+    public void searchPageStreaming(Blackhole blackhole) {
+        JsonAppendableWriter writer = JsonWriter.on(new BlackholeOutputStream(blackhole));
+        StreamingConvert.infoItems(writer, null, Fields.ALL, searchPage);
+        writer.done();
+    }
+
+    @Benchmark
+    public Map<String, Object> videoStreamMap() {
+        return Convert.videoStreamMap(videoStream);
+    }
+
+    @Benchmark
+    public Map<String, Object> audioStreamMap() {
+        return Convert.audioStreamMap(audioStream);
+    }
+
+    @Benchmark
+    public Map<String, Object> itagItemMap() {
+        return Convert.itagItemMap(itagItem);
+    }
+
+    // Consumes the output so serialization cannot be optimized away, without buffering it
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
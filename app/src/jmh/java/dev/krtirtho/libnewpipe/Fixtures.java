@@ -0,0 +1,259 @@
+package dev.krtirtho.libnewpipe;
+
+import org.schabi.newpipe.extractor.Image;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.channel.ChannelInfoItem;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfoItem;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.DeliveryMethod;
+import org.schabi.newpipe.extractor.stream.Description;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds extractor objects shaped like real YouTube responses without touching the network,
+ * so benchmarks are reproducible and run offline.
+ */
+final class Fixtures {
+
+    private static final int YOUTUBE = 0;
+    private static final long DURATION_SECONDS = 3 * 60 * 60 + 17 * 60;
+    private static final OffsetDateTime UPLOADED = OffsetDateTime.of(2024, 3, 14, 15, 9, 26, 0, ZoneOffset.UTC);
+
+    // itag, format, resolution, height, fps, bitrate, codec
+    private static final Object[][] VIDEO_ITAGS = {
+            {160, MediaFormat.MPEG_4, "144p", 144, 30, 110_000, "avc1.4d400c"},
+            {278, MediaFormat.WEBM, "144p", 144, 30, 95_000, "vp9"},
+            {394, MediaFormat.MPEG_4, "144p", 144, 30, 80_000, "av01.0.00M.08"},
+            {133, MediaFormat.MPEG_4, "240p", 240, 30, 250_000, "avc1.4d4015"},
+            {242, MediaFormat.WEBM, "240p", 240, 30, 220_000, "vp9"},
+            {395, MediaFormat.MPEG_4, "240p", 240, 30, 180_000, "av01.0.00M.08"},
+            {134, MediaFormat.MPEG_4, "360p", 360, 30, 600_000, "avc1.4d401e"},
+            {243, MediaFormat.WEBM, "360p", 360, 30, 400_000, "vp9"},
+            {396, MediaFormat.MPEG_4, "360p", 360, 30, 350_000, "av01.0.01M.08"},
+            {135, MediaFormat.MPEG_4, "480p", 480, 30, 1_100_000, "avc1.4d401f"},
+            {244, MediaFormat.WEBM, "480p", 480, 30, 750_000, "vp9"},
+            {397, MediaFormat.MPEG_4, "480p", 480, 30, 650_000, "av01.0.04M.08"},
+            {136, MediaFormat.MPEG_4, "720p", 720, 30, 2_500_000, "avc1.4d401f"},
+            {247, MediaFormat.WEBM, "720p", 720, 30, 1_500_000, "vp9"},
+            {398, MediaFormat.MPEG_4, "720p", 720, 30, 1_300_000, "av01.0.05M.08"},
+            {298, MediaFormat.MPEG_4, "720p60", 720, 60, 3_500_000, "avc1.4d4020"},
+            {302, MediaFormat.WEBM, "720p60", 720, 60, 2_600_000, "vp9"},
+            {137, MediaFormat.MPEG_4, "1080p", 1080, 30, 4_500_000, "avc1.640028"},
+            {248, MediaFormat.WEBM, "1080p", 1080, 30, 2_700_000, "vp9"},
+            {399, MediaFormat.MPEG_4, "1080p", 1080, 30, 2_300_000, "av01.0.08M.08"},
+            {299, MediaFormat.MPEG_4, "1080p60", 1080, 60, 6_000_000, "avc1.64002a"},
+            {303, MediaFormat.WEBM, "1080p60", 1080, 60, 4_400_000, "vp9"},
+            {271, MediaFormat.WEBM, "1440p", 1440, 30, 9_000_000, "vp9"},
+            {400, MediaFormat.MPEG_4, "1440p", 1440, 30, 7_000_000, "av01.0.12M.08"},
+            {313, MediaFormat.WEBM, "2160p", 2160, 30, 18_000_000, "vp9"},
+            {401, MediaFormat.MPEG_4, "2160p", 2160, 30, 14_000_000, "av01.0.12M.08"},
+    };
+
+    // itag, format, bitrate, codec
+    private static final Object[][] AUDIO_ITAGS = {
+            {139, MediaFormat.M4A, 48_000, "mp4a.40.5"},
+            {140, MediaFormat.M4A, 128_000, "mp4a.40.2"},
+            {249, MediaFormat.WEBMA_OPUS, 50_000, "opus"},
+            {250, MediaFormat.WEBMA_OPUS, 70_000, "opus"},
+            {251, MediaFormat.WEBMA_OPUS, 160_000, "opus"},
+    };
+
+    // Prevent instantiation for a utility class
+    private Fixtures() {
+    }
+
+    /**
+     * @return A three hour video with every common video-only, audio and muxed format, in four
+     * audio languages, with a long description and a full set of related items.
+     */
+    static StreamInfo longVideo() throws ParsingException {
+        String id = "fixture0001";
+        StreamInfo info = new StreamInfo(YOUTUBE, watchUrl(id), watchUrl(id), StreamType.VIDEO_STREAM,
+                id, "Conference keynote, full recording with Q&A", 0);
+        info.setThumbnails(thumbnails("https://i.ytimg.com/vi/" + id));
+        info.setTextualUploadDate("2024-03-14T15:09:26Z");
+        info.setUploadDate(new DateWrapper(UPLOADED));
+        info.setDuration(DURATION_SECONDS);
+        info.setDescription(new Description(description(), Description.HTML));
+        info.setViewCount(1_234_567);
+        info.setLikeCount(45_678);
+        info.setUploaderName("Fixture Channel");
+        info.setUploaderUrl("https://www.youtube.com/channel/UCfixture000000000000000");
+        info.setUploaderAvatars(thumbnails("https://yt3.ggpht.com/fixture"));
+        info.setUploaderVerified(true);
+        info.setUploaderSubscriberCount(987_654);
+        info.setCategory("Science & Technology");
+        info.setLicence("YouTube licence");
+        info.setTags(List.of("conference", "keynote", "java", "performance", "native image", "graalvm"));
+
+        List<VideoStream> videoOnly = new ArrayList<>();
+        for (Object[] row : VIDEO_ITAGS) {
+            videoOnly.add(videoStream(id, row, true));
+        }
+        info.setVideoOnlyStreams(videoOnly);
+        info.setVideoStreams(List.of(videoStream(id, new Object[]{18, MediaFormat.MPEG_4, "360p", 360, 30, 500_000, "avc1.42001E, mp4a.40.2"}, false)));
+
+        List<AudioStream> audio = new ArrayList<>();
+        for (String language : List.of("en", "de", "es", "ja")) {
+            for (Object[] row : AUDIO_ITAGS) {
+                audio.add(audioStream(id, row, language));
+            }
+        }
+        info.setAudioStreams(audio);
+
+        info.setDashMpdUrl("");
+        info.setHlsUrl("");
+        info.setRelatedItems(new ArrayList<>(searchPage()));
+        return info;
+    }
+
+    /**
+     * @return A search result page of 20 items: mostly videos, plus channels and playlists.
+     */
+    static List<InfoItem> searchPage() {
+        List<InfoItem> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            if (i == 3 || i == 11) {
+                items.add(channel(i));
+            } else if (i == 7 || i == 15) {
+                items.add(playlist(i));
+            } else {
+                items.add(streamItem(i));
+            }
+        }
+        return items;
+    }
+
+    private static StreamInfoItem streamItem(int index) {
+        String id = String.format("result%05d", index);
+        StreamInfoItem item = new StreamInfoItem(YOUTUBE, watchUrl(id), "Search result number " + index + " with a typical title",
+                StreamType.VIDEO_STREAM);
+        item.setThumbnails(thumbnails("https://i.ytimg.com/vi/" + id));
+        item.setDuration(60L * (3 + index));
+        item.setViewCount(10_000L * (index + 1));
+        item.setUploaderName("Uploader " + index);
+        item.setUploaderUrl("https://www.youtube.com/channel/UCuploader" + index);
+        item.setUploaderAvatars(thumbnails("https://yt3.ggpht.com/uploader" + index));
+        item.setUploaderVerified(index % 2 == 0);
+        item.setTextualUploadDate(index + " days ago");
+        item.setUploadDate(new DateWrapper(UPLOADED.minusDays(index), true));
+        item.setShortDescription("A short description of result " + index + " as shown below the title.");
+        return item;
+    }
+
+    private static ChannelInfoItem channel(int index) {
+        ChannelInfoItem item = new ChannelInfoItem(YOUTUBE, "https://www.youtube.com/channel/UCchannel" + index,
+                "Channel " + index);
+        item.setThumbnails(thumbnails("https://yt3.ggpht.com/channel" + index));
+        item.setDescription("Channel description " + index);
+        item.setSubscriberCount(50_000L * (index + 1));
+        item.setStreamCount(120 + index);
+        item.setVerified(true);
+        return item;
+    }
+
+    private static PlaylistInfoItem playlist(int index) {
+        PlaylistInfoItem item = new PlaylistInfoItem(YOUTUBE, "https://www.youtube.com/playlist?list=PLfixture" + index,
+                "Playlist " + index);
+        item.setThumbnails(thumbnails("https://i.ytimg.com/vi/playlist" + index));
+        item.setUploaderName("Curator " + index);
+        item.setUploaderUrl("https://www.youtube.com/channel/UCcurator" + index);
+        item.setStreamCount(40 + index);
+        return item;
+    }
+
+    private static VideoStream videoStream(String videoId, Object[] row, boolean videoOnly) throws ParsingException {
+        int itag = (int) row[0];
+        int height = (int) row[3];
+        ItagItem itagItem = itagItem(itag, (int) row[5], (String) row[6]);
+        itagItem.setWidth(height * 16 / 9);
+        itagItem.setHeight(height);
+        itagItem.setFps((int) row[4]);
+        itagItem.setQuality(height >= 720 ? "hd" + height : "medium");
+
+        return new VideoStream.Builder()
+                .setId(String.valueOf(itag))
+                .setContent(streamUrl(videoId, itag), true)
+                .setMediaFormat((MediaFormat) row[1])
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setResolution((String) row[2])
+                .setIsVideoOnly(videoOnly)
+                .setItagItem(itagItem)
+                .build();
+    }
+
+    private static AudioStream audioStream(String videoId, Object[] row, String language) throws ParsingException {
+        int itag = (int) row[0];
+        ItagItem itagItem = itagItem(itag, (int) row[2], (String) row[3]);
+        itagItem.setSampleRate(48_000);
+        itagItem.setAudioChannels(2);
+
+        return new AudioStream.Builder()
+                .setId(itag + "-" + language)
+                .setContent(streamUrl(videoId, itag) + "&xtags=lang%3D" + language, true)
+                .setMediaFormat((MediaFormat) row[1])
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setAverageBitrate((int) row[2] / 1000)
+                .setAudioTrackId(language + ".4")
+                .setAudioTrackName(language.toUpperCase() + " original")
+                .setItagItem(itagItem)
+                .build();
+    }
+
+    private static ItagItem itagItem(int itag, int bitrate, String codec) throws ParsingException {
+        ItagItem item = new ItagItem(ItagItem.getItag(itag));
+        item.setBitrate(bitrate);
+        item.setCodec(codec);
+        item.setInitStart(0);
+        item.setInitEnd(740);
+        item.setIndexStart(741);
+        item.setIndexEnd(9_000);
+        item.setContentLength(bitrate / 8L * DURATION_SECONDS);
+        item.setApproxDurationMs(DURATION_SECONDS * 1000);
+        return item;
+    }
+
+    private static List<Image> thumbnails(String base) {
+        return List.of(
+                new Image(base + "/default.jpg", 90, 120, Image.ResolutionLevel.LOW),
+                new Image(base + "/mqdefault.jpg", 180, 320, Image.ResolutionLevel.MEDIUM),
+                new Image(base + "/hqdefault.jpg", 360, 480, Image.ResolutionLevel.MEDIUM),
+                new Image(base + "/maxresdefault.jpg", 720, 1280, Image.ResolutionLevel.HIGH));
+    }
+
+    // Signed stream URLs dominate the size of real output, so the fixtures carry realistic ones
+    private static String streamUrl(String videoId, int itag) {
+        return "https://rr3---sn-fixture.googlevideo.com/videoplayback?expire=1710436166&ei=fixtureEi&ip=203.0.113.7"
+                + "&id=o-" + videoId + "&itag=" + itag + "&source=youtube&requiressl=yes&mh=fx&mm=31%2C29&mn=sn-fixture"
+                + "&ms=au%2Crdu&mv=m&mvi=3&pl=24&initcwndbps=1500000&vprv=1&svpuc=1&mime=video%2Fmp4&gir=yes"
+                + "&clen=123456789&dur=11820.000&lmt=1710000000000000&mt=1710414000&fvip=4&keepalive=yes"
+                + "&c=ANDROID&txp=5532434&sparams=expire%2Cei%2Cip%2Cid%2Citag%2Csource%2Crequiressl%2Cvprv%2Csvpuc"
+                + "%2Cmime%2Cgir%2Cclen%2Cdur%2Clmt&sig=AJfQdSswRQIhAfixturesignaturefixturesignaturefixturesig"
+                + "&lsparams=mh%2Cmm%2Cmn%2Cms%2Cmv%2Cmvi%2Cpl%2Cinitcwndbps&lsig=AHWaYeowRgIhAfixturelsig";
+    }
+
+    private static String watchUrl(String id) {
+        return "https://www.youtube.com/watch?v=" + id;
+    }
+
+    private static String description() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append(String.format("<a href=\"https://www.youtube.com/watch?v=fixture0001&amp;t=%ds\">%d:%02d:00</a> Chapter %d<br>",
+                    i * 290, i * 290 / 3600, i * 290 / 60 % 60, i + 1));
+        }
+        return text.toString();
+    }
+}
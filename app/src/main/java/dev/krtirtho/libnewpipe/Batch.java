@@ -0,0 +1,90 @@
+package dev.krtirtho.libnewpipe;
+
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Resolves many video IDs concurrently and streams the results as newline-delimited JSON.
+ * Each line is written as soon as its extraction finishes, in completion order.
+ */
+public final class Batch {
+
+    /**
+     * Number of extractions allowed to run at the same time when none is configured.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    // Prevent instantiation for a utility class
+    private Batch() {
+    }
+
+    /**
+     * Reads video IDs from a file, one per line. Blank lines and lines starting with '#' are skipped.
+     *
+     * @param file The path of the ID list.
+     * @return The IDs in file order.
+     */
+    public static List<String> readIds(Path file) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String id = line.trim();
+            if (!id.isEmpty() && !id.startsWith("#")) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Extracts every video on its own virtual thread, with at most {@code parallelism}
+     * extractions in flight, and writes one {@code {"id": ..., "result"|"error": ...}} record per ID.
+     *
+     * @param videoIds    The video IDs to resolve.
+     * @param parallelism The maximum number of concurrent extractions.
+     * @param fields      The projection applied to every result.
+     * @param writer      Receives one record per ID.
+     */
+    public static void streams(List<String> videoIds, int parallelism, Fields fields, RecordWriter writer) {
+        NewPipe.getService();
+
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String videoId : videoIds) {
+                executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        extract(videoId, fields, writer);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    private static void extract(String videoId, Fields fields, RecordWriter writer) throws IOException {
+        StreamInfo info;
+        try {
+            info = NewPipe.extractStream(videoId);
+        } catch (ExtractionException | IOException e) {
+            writer.writeError(videoId, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            writer.writeError(videoId, e.toString());
+            return;
+        }
+        writer.writeResult(videoId, (out, key) -> StreamingConvert.streamInfo(out, key, fields, info));
+    }
+}
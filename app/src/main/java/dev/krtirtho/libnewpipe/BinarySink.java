@@ -0,0 +1,260 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The shared part of the binary {@link JsonSink} implementations: it maps the sink calls and
+ * arbitrary values onto a handful of primitive encodings, so {@link StreamingConvert} and the
+ * Map based output can write binary formats exactly as they write JSON.
+ * <p>
+ * Write errors are thrown as {@link UncheckedIOException} since the sink interface does not
+ * declare checked exceptions; {@link RecordWriter} unwraps them again.
+ */
+public abstract class BinarySink implements JsonSink<BinarySink> {
+
+    protected abstract void writeNull() throws IOException;
+
+    protected abstract void writeBoolean(boolean value) throws IOException;
+
+    protected abstract void writeLong(long value) throws IOException;
+
+    protected abstract void writeDouble(double value) throws IOException;
+
+    protected abstract void writeString(String value) throws IOException;
+
+    protected abstract void writeStartArray() throws IOException;
+
+    protected abstract void writeStartObject() throws IOException;
+
+    protected abstract void writeEnd() throws IOException;
+
+    /**
+     * Called before every value that is not an object member, including nested containers.
+     */
+    protected void beforeValue() throws IOException {
+    }
+
+    /**
+     * Writes the key of an object member.
+     */
+    protected void writeKey(String key) throws IOException {
+        writeString(key);
+    }
+
+    /**
+     * Completes the top-level value. Must be called once it has been written.
+     */
+    public void done() throws IOException {
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private BinarySink unkeyed(Write write) {
+        try {
+            beforeValue();
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private BinarySink keyed(String key, Write write) {
+        try {
+            writeKey(key);
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private void writeAny(Object o) throws IOException {
+        if (o == null) {
+            writeNull();
+        } else if (o instanceof String) {
+            writeString((String) o);
+        } else if (o instanceof Boolean) {
+            writeBoolean((Boolean) o);
+        } else if (o instanceof Double || o instanceof Float || o instanceof BigDecimal) {
+            writeDouble(((Number) o).doubleValue());
+        } else if (o instanceof BigInteger && ((BigInteger) o).bitLength() >= Long.SIZE) {
+            writeDouble(((BigInteger) o).doubleValue());
+        } else if (o instanceof Number) {
+            writeLong(((Number) o).longValue());
+        } else if (o instanceof Map) {
+            writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
+                writeKey(String.valueOf(entry.getKey()));
+                writeAny(entry.getValue());
+            }
+            writeEnd();
+        } else if (o instanceof Collection) {
+            writeStartArray();
+            for (Object element : (Collection<?>) o) {
+                beforeValue();
+                writeAny(element);
+            }
+            writeEnd();
+        } else if (o instanceof Object[]) {
+            writeStartArray();
+            for (Object element : (Object[]) o) {
+                beforeValue();
+                writeAny(element);
+            }
+            writeEnd();
+        } else {
+            throw new IllegalArgumentException("Unable to handle type: " + o.getClass());
+        }
+    }
+
+    @Override
+    public BinarySink array(Collection<?> c) {
+        return unkeyed(() -> writeAny(c));
+    }
+
+    @Override
+    public BinarySink array(String key, Collection<?> c) {
+        return keyed(key, () -> writeAny(c));
+    }
+
+    @Override
+    public BinarySink object(Map<?, ?> map) {
+        return unkeyed(() -> writeAny(map));
+    }
+
+    @Override
+    public BinarySink object(String key, Map<?, ?> map) {
+        return keyed(key, () -> writeAny(map));
+    }
+
+    @Override
+    public BinarySink nul() {
+        return unkeyed(this::writeNull);
+    }
+
+    @Override
+    public BinarySink nul(String key) {
+        return keyed(key, this::writeNull);
+    }
+
+    @Override
+    public BinarySink value(Object o) {
+        return unkeyed(() -> writeAny(o));
+    }
+
+    @Override
+    public BinarySink value(String key, Object o) {
+        return keyed(key, () -> writeAny(o));
+    }
+
+    @Override
+    public BinarySink value(String s) {
+        return unkeyed(() -> writeAny(s));
+    }
+
+    @Override
+    public BinarySink value(int i) {
+        return unkeyed(() -> writeLong(i));
+    }
+
+    @Override
+    public BinarySink value(long l) {
+        return unkeyed(() -> writeLong(l));
+    }
+
+    @Override
+    public BinarySink value(boolean b) {
+        return unkeyed(() -> writeBoolean(b));
+    }
+
+    @Override
+    public BinarySink value(double d) {
+        return unkeyed(() -> writeDouble(d));
+    }
+
+    @Override
+    public BinarySink value(float f) {
+        return unkeyed(() -> writeDouble(f));
+    }
+
+    @Override
+    public BinarySink value(Number n) {
+        return unkeyed(() -> writeAny(n));
+    }
+
+    @Override
+    public BinarySink value(String key, String s) {
+        return keyed(key, () -> writeAny(s));
+    }
+
+    @Override
+    public BinarySink value(String key, int i) {
+        return keyed(key, () -> writeLong(i));
+    }
+
+    @Override
+    public BinarySink value(String key, long l) {
+        return keyed(key, () -> writeLong(l));
+    }
+
+    @Override
+    public BinarySink value(String key, boolean b) {
+        return keyed(key, () -> writeBoolean(b));
+    }
+
+    @Override
+    public BinarySink value(String key, double d) {
+        return keyed(key, () -> writeDouble(d));
+    }
+
+    @Override
+    public BinarySink value(String key, float f) {
+        return keyed(key, () -> writeDouble(f));
+    }
+
+    @Override
+    public BinarySink value(String key, Number n) {
+        return keyed(key, () -> writeAny(n));
+    }
+
+    @Override
+    public BinarySink array() {
+        return unkeyed(this::writeStartArray);
+    }
+
+    @Override
+    public BinarySink object() {
+        return unkeyed(this::writeStartObject);
+    }
+
+    @Override
+    public BinarySink array(String key) {
+        return keyed(key, this::writeStartArray);
+    }
+
+    @Override
+    public BinarySink object(String key) {
+        return keyed(key, this::writeStartObject);
+    }
+
+    @Override
+    public BinarySink end() {
+        try {
+            writeEnd();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+}
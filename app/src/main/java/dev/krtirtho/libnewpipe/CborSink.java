@@ -0,0 +1,103 @@
+package dev.krtirtho.libnewpipe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes CBOR (RFC 8949). Arrays and maps use indefinite-length encoding, so values stream
+ * straight to the output without buffering, and consecutive top-level values form a CBOR
+ * sequence (RFC 8742). Doubles that are exactly representable as floats are written in four bytes.
+ */
+public class CborSink extends BinarySink {
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_TEXT = 3;
+
+    private final OutputStream out;
+
+    public CborSink(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    protected void writeNull() throws IOException {
+        out.write(0xf6);
+    }
+
+    @Override
+    protected void writeBoolean(boolean value) throws IOException {
+        out.write(value ? 0xf5 : 0xf4);
+    }
+
+    @Override
+    protected void writeLong(long value) throws IOException {
+        if (value >= 0) {
+            writeHeader(MAJOR_UNSIGNED, value);
+        } else {
+            // -1 - n without overflow for Long.MIN_VALUE
+            writeHeader(MAJOR_NEGATIVE, ~value);
+        }
+    }
+
+    @Override
+    protected void writeDouble(double value) throws IOException {
+        float single = (float) value;
+        if (single == value || Double.isNaN(value)) {
+            out.write(0xfa);
+            writeBigEndian(Float.floatToIntBits(single) & 0xffffffffL, 4);
+        } else {
+            out.write(0xfb);
+            writeBigEndian(Double.doubleToLongBits(value), 8);
+        }
+    }
+
+    @Override
+    protected void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHeader(MAJOR_TEXT, bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    protected void writeStartArray() throws IOException {
+        out.write(0x9f);
+    }
+
+    @Override
+    protected void writeStartObject() throws IOException {
+        out.write(0xbf);
+    }
+
+    @Override
+    protected void writeEnd() throws IOException {
+        out.write(0xff);
+    }
+
+    // The argument is treated as unsigned, so it covers the full range of the major types
+    private void writeHeader(int major, long argument) throws IOException {
+        int type = major << 5;
+        if (argument >= 0 && argument < 24) {
+            out.write(type | (int) argument);
+        } else if (argument >= 0 && argument <= 0xff) {
+            out.write(type | 24);
+            out.write((int) argument);
+        } else if (argument >= 0 && argument <= 0xffff) {
+            out.write(type | 25);
+            writeBigEndian(argument, 2);
+        } else if (argument >= 0 && argument <= 0xffffffffL) {
+            out.write(type | 26);
+            writeBigEndian(argument, 4);
+        } else {
+            out.write(type | 27);
+            writeBigEndian(argument, 8);
+        }
+    }
+
+    private void writeBigEndian(long value, int bytes) throws IOException {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package dev.krtirtho.libnewpipe;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Counts connection pool usage of an OkHttpClient. Every call acquires a connection; only the
+ * ones that had to connect first opened a new one, the rest were served from the pool or
+ * multiplexed onto an existing HTTP/2 connection.
+ */
+public class ConnectionMetrics extends EventListener {
+
+    /**
+     * Byte counts of a single call, attached to its request as a tag.
+     */
+    static final class Transfer {
+        /**
+         * Body bytes read from the network, before decompression, or -1 until the body was read.
+         */
+        volatile long wireBytes = -1;
+        /**
+         * Body bytes after decompression, as handed to the extractor.
+         */
+        volatile long bodyBytes;
+    }
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong http2Connections = new AtomicLong();
+
+    @Override
+    public void callStart(Call call) {
+        calls.incrementAndGet();
+    }
+
+    @Override
+    public void callFailed(Call call, java.io.IOException ioe) {
+        failedCalls.incrementAndGet();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectionsOpened.incrementAndGet();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        if (protocol == Protocol.HTTP_2) {
+            http2Connections.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        Metrics.recordBytes(byteCount);
+        Transfer transfer = call.request().tag(Transfer.class);
+        if (transfer != null) {
+            transfer.wireBytes = byteCount;
+        }
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        connectionsAcquired.incrementAndGet();
+    }
+
+    /**
+     * @return Call and connection counters plus the share of calls that reused a connection.
+     */
+    public Map<String, Object> stats() {
+        long acquired = connectionsAcquired.get();
+        long opened = connectionsOpened.get();
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("calls", calls.get());
+        map.put("failedCalls", failedCalls.get());
+        map.put("connectionsOpened", opened);
+        map.put("connectionsAcquired", acquired);
+        map.put("http2Connections", http2Connections.get());
+        map.put("poolHitRate", acquired > 0 ? Math.max(0, acquired - opened) / (double) acquired : 0.0);
+        return map;
+    }
+}
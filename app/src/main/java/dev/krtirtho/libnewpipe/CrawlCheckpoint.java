@@ -0,0 +1,148 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import com.grack.nanojson.JsonParser;
+import com.grack.nanojson.JsonParserException;
+import com.grack.nanojson.JsonWriter;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.Page;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The resume point of a {@link Crawler} run: the page token to continue from and the number of
+ * items written before it. It is stored as a small JSON file that is replaced atomically after
+ * every completed page, so an interrupted crawl loses at most the page in progress.
+ */
+public final class CrawlCheckpoint {
+
+    private final String source;
+    private final int count;
+    @Nullable
+    private final Page nextPage;
+
+    /**
+     * @param source   Identifies the crawled list, a checkpoint of another list is ignored.
+     * @param count    The number of items written before {@code nextPage}.
+     * @param nextPage The page to continue with, or null once the list is exhausted.
+     */
+    public CrawlCheckpoint(String source, int count, @Nullable Page nextPage) {
+        this.source = source;
+        this.count = count;
+        this.nextPage = nextPage;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Nullable
+    public Page getNextPage() {
+        return nextPage;
+    }
+
+    /**
+     * @return Whether the crawl reached the end of the list.
+     */
+    public boolean isComplete() {
+        return nextPage == null;
+    }
+
+    /**
+     * Reads the checkpoint of a list.
+     *
+     * @param file   The checkpoint file.
+     * @param source The list being crawled.
+     * @return The checkpoint, or null if the file is missing or belongs to another list.
+     */
+    @Nullable
+    public static CrawlCheckpoint load(Path file, String source) throws IOException {
+        JsonObject json;
+        try {
+            json = JsonParser.object().from(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (JsonParserException e) {
+            throw new IOException("Invalid checkpoint " + file + ": " + e.getMessage(), e);
+        }
+        if (!source.equals(json.getString("source"))) {
+            return null;
+        }
+        return new CrawlCheckpoint(source, json.getInt("count"), readPage(json.getObject("nextPage")));
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it over the previous one.
+     *
+     * @param file The checkpoint file.
+     */
+    public void save(Path file) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("source", source);
+        json.put("count", count);
+        json.put("nextPage", writePage(nextPage));
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, JsonWriter.string(json), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Nullable
+    private static Map<String, Object> writePage(@Nullable Page page) {
+        if (page == null) {
+            return null;
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("url", page.getUrl());
+        map.put("id", page.getId());
+        map.put("ids", page.getIds());
+        map.put("cookies", page.getCookies());
+        map.put("body", page.getBody() != null ? Base64.getEncoder().encodeToString(page.getBody()) : null);
+        return map;
+    }
+
+    @Nullable
+    private static Page readPage(@Nullable JsonObject json) {
+        if (json == null) {
+            return null;
+        }
+        List<String> ids = null;
+        JsonArray idArray = json.getArray("ids");
+        if (idArray != null) {
+            ids = new ArrayList<>();
+            for (Object id : idArray) {
+                ids.add(String.valueOf(id));
+            }
+        }
+        Map<String, String> cookies = null;
+        JsonObject cookieObject = json.getObject("cookies");
+        if (cookieObject != null) {
+            cookies = new HashMap<>();
+            for (Map.Entry<String, Object> cookie : cookieObject.entrySet()) {
+                cookies.put(cookie.getKey(), String.valueOf(cookie.getValue()));
+            }
+        }
+        String body = json.getString("body");
+        return new Page(json.getString("url"), json.getString("id"), ids, cookies,
+                body != null ? Base64.getDecoder().decode(body) : null);
+    }
+}
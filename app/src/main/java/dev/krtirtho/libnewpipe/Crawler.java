@@ -0,0 +1,206 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.ListInfo;
+import org.schabi.newpipe.extractor.channel.ChannelInfo;
+import org.schabi.newpipe.extractor.channel.tabs.ChannelTabInfo;
+import org.schabi.newpipe.extractor.channel.tabs.ChannelTabs;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.linkhandler.ListLinkHandler;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfo;
+import org.schabi.newpipe.extractor.services.youtube.YoutubeService;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pages through a playlist or a channel tab and writes one record per item as soon as its page
+ * arrives, fetching the next page while the current one is written, see {@link Pages}.
+ * <p>
+ * With {@code full} every stream item is additionally extracted in full on a virtual thread,
+ * at most {@code parallelism} at a time, and written as a {@code {"id": ..., "result"|"error": ...}}
+ * record like {@link Batch} does. With a checkpoint file the position after each completed page
+ * is saved, and a later run over the same list continues from there. Items of the page that was
+ * in progress when a run stopped are written again.
+ */
+public final class Crawler {
+
+    /**
+     * The channel tab crawled when none is given.
+     */
+    public static final String DEFAULT_CHANNEL_TAB = ChannelTabs.VIDEOS;
+
+    /**
+     * Fetches the first page of a list.
+     */
+    @FunctionalInterface
+    private interface FirstPage<T extends InfoItem> {
+        ListInfo<T> fetch() throws ExtractionException, IOException;
+    }
+
+    // Prevent instantiation for a utility class
+    private Crawler() {
+    }
+
+    /**
+     * Crawls the videos of a playlist.
+     *
+     * @param url            The playlist URL.
+     * @param fields         The projection applied to every record.
+     * @param full           Whether to extract every video in full instead of writing the list items.
+     * @param parallelism    The maximum number of concurrent full extractions.
+     * @param maxPages       The maximum number of pages to read in this run.
+     * @param limit          The maximum number of items to write in this run.
+     * @param checkpointFile Where the resume point is kept, or null to always start from the beginning.
+     * @param writer         Receives the records.
+     * @return The number of items written in this run.
+     */
+    public static int playlist(String url, Fields fields, boolean full, int parallelism, int maxPages, int limit,
+                               @Nullable Path checkpointFile, RecordWriter writer) throws ExtractionException, IOException {
+        YoutubeService service = NewPipe.getService();
+        return crawl("playlist " + url, fields, full, parallelism, maxPages, limit, checkpointFile, writer,
+                () -> PlaylistInfo.getInfo(service, url),
+                page -> PlaylistInfo.getMoreItems(service, url, page));
+    }
+
+    /**
+     * Crawls one tab of a channel.
+     *
+     * @param url The channel URL.
+     * @param tab The tab to crawl, one of the {@link ChannelTabs} names such as {@code videos}.
+     * @see #playlist(String, Fields, boolean, int, int, int, Path, RecordWriter)
+     */
+    public static int channel(String url, String tab, Fields fields, boolean full, int parallelism, int maxPages,
+                              int limit, @Nullable Path checkpointFile, RecordWriter writer)
+            throws ExtractionException, IOException {
+        YoutubeService service = NewPipe.getService();
+        long start = System.nanoTime();
+        ChannelInfo channel = ChannelInfo.getInfo(service, url);
+        Metrics.record(Metrics.EXTRACT, start);
+
+        ListLinkHandler handler = null;
+        for (ListLinkHandler candidate : channel.getTabs()) {
+            if (candidate.getContentFilters().contains(tab)) {
+                handler = candidate;
+                break;
+            }
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Channel has no " + tab + " tab");
+        }
+
+        ListLinkHandler tabHandler = handler;
+        return crawl("channel " + url + " " + tab, fields, full, parallelism, maxPages, limit, checkpointFile, writer,
+                () -> ChannelTabInfo.getInfo(service, tabHandler),
+                page -> ChannelTabInfo.getMoreItems(service, tabHandler, page));
+    }
+
+    private static <T extends InfoItem> int crawl(String source, Fields fields, boolean full, int parallelism,
+                                                  int maxPages, int limit, @Nullable Path checkpointFile,
+                                                  RecordWriter writer, FirstPage<T> firstPage, Pages.Fetcher<T> fetcher)
+            throws ExtractionException, IOException {
+        Pages.Fetcher<T> timedFetcher = page -> {
+            long start = System.nanoTime();
+            InfoItemsPage<T> items = fetcher.fetch(page);
+            Metrics.record(Metrics.EXTRACT, start);
+            return items;
+        };
+
+        CrawlCheckpoint checkpoint = checkpointFile != null ? CrawlCheckpoint.load(checkpointFile, source) : null;
+        InfoItemsPage<T> first;
+        int written;
+        if (checkpoint == null) {
+            long start = System.nanoTime();
+            ListInfo<T> info = firstPage.fetch();
+            Metrics.record(Metrics.EXTRACT, start);
+            first = new InfoItemsPage<>(info.getRelatedItems(), info.getNextPage(), info.getErrors());
+            written = 0;
+        } else if (checkpoint.isComplete()) {
+            return 0;
+        } else {
+            first = timedFetcher.fetch(checkpoint.getNextPage());
+            written = checkpoint.getCount();
+        }
+
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        // Extractions of the current page, the checkpoint only moves past a page once they are done
+        List<Future<?>> pending = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return Pages.forEach(first, timedFetcher, maxPages, limit,
+                    item -> {
+                        if (full && item instanceof StreamInfoItem) {
+                            acquire(permits);
+                            pending.add(executor.submit(() -> {
+                                try {
+                                    extract(item.getUrl(), fields, writer);
+                                } finally {
+                                    permits.release();
+                                }
+                                return null;
+                            }));
+                        } else {
+                            writer.write((out, key) -> StreamingConvert.infoItem(out, key, fields, item));
+                        }
+                    },
+                    (nextPage, consumed) -> {
+                        awaitAll(pending);
+                        if (checkpointFile != null) {
+                            new CrawlCheckpoint(source, written + consumed, nextPage).save(checkpointFile);
+                        }
+                    });
+        }
+    }
+
+    private static void extract(String url, Fields fields, RecordWriter writer) throws IOException {
+        StreamInfo info;
+        try {
+            YoutubeService service = NewPipe.getService();
+            info = NewPipe.extractStream(service.getStreamLHFactory().getId(url));
+        } catch (ExtractionException | IOException e) {
+            writer.writeError(url, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            writer.writeError(url, e.toString());
+            return;
+        }
+        writer.writeResult(url, (out, key) -> StreamingConvert.streamInfo(out, key, fields, info));
+    }
+
+    private static void acquire(Semaphore permits) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an extraction slot");
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for extractions");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            futures.clear();
+        }
+    }
+}
@@ -1,40 +1,410 @@
 package dev.krtirtho.libnewpipe;
 
+import com.grack.nanojson.JsonWriter;
+
+import org.jetbrains.annotations.Nullable;
 import org.schabi.newpipe.extractor.downloader.Request;
 import org.schabi.newpipe.extractor.downloader.Response;
 import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.RequestBody;
 import okhttp3.MediaType;
 import okhttp3.Request.Builder;
 import okhttp3.ResponseBody;
+import okhttp3.brotli.BrotliInterceptor;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
 
 /**
  * A simple implementation of the NewPipeExtractor Downloader interface using OkHttp.
+ * <p>
+ * Calls are dispatched asynchronously so the dispatcher's request limits apply. Identical
+ * GET and HEAD requests that are in flight at the same time share a single network call.
+ * When a {@link RateLimiter} is set, requests wait for their host's token bucket, and
+ * throttling responses (429, 5xx) and I/O errors including timeouts are retried with jittered
+ * exponential backoff that honours Retry-After, as long as the global retry budget allows.
+ * Requests other than GET and HEAD are only retried after a 429. When a
+ * {@link RevalidationStore} is set, GET requests are sent conditionally on the last stored
+ * response and a 304 answer is served from the store.
+ * <p>
+ * Responses are negotiated as brotli or gzip and decompressed transparently. Bodies are read
+ * into a single buffer up to a configurable maximum size, and larger responses fail with a
+ * {@link ResponseTooLargeException} instead of being buffered in full.
  */
 public class Downloader extends org.schabi.newpipe.extractor.downloader.Downloader {
 
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 16;
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 300;
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 32;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_MAX_BODY_SIZE = 32L * 1024 * 1024;
+
+    private static final long BACKOFF_BASE_MILLIS = 500;
+    private static final long BACKOFF_MAX_MILLIS = 30_000;
+
+    // The challenge page links the script in its head, so the start of the body is enough
+    private static final int RECAPTCHA_SCAN_BYTES = 64 * 1024;
+    private static final ByteString RECAPTCHA_MARKER = ByteString.encodeUtf8("https://www.google.com/recaptcha");
+
+    // Null only in subclasses that never go to the network
+    @Nullable
     private final OkHttpClient client;
+    @Nullable
+    private final ResponseCache cache;
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    @Nullable
+    private RateLimiter rateLimiter;
+    @Nullable
+    private RevalidationStore revalidationStore;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+    private boolean trace;
 
     public Downloader() {
-        this(new OkHttpClient.Builder().followRedirects(true).build());
+        this(createClient(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_SECONDS,
+                DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST));
     }
 
     public Downloader(OkHttpClient client) {
-        this.client = client;
+        this(client, null);
+    }
+
+    /**
+     * @param client The HTTP client used for network requests.
+     * @param cache  An optional on-disk cache consulted before going to the network.
+     */
+    public Downloader(OkHttpClient client, @Nullable ResponseCache cache) {
+        // newBuilder() shares the pool and dispatcher, only the listener is added
+        this.client = client.newBuilder().eventListener(connectionMetrics).build();
+        this.cache = cache;
+    }
+
+    /**
+     * Creates a downloader without an HTTP client, connection pool or dispatcher, for subclasses
+     * that override {@link #execute(Request)} and never send a network request.
+     *
+     * @param cache An optional on-disk cache, or null.
+     */
+    protected Downloader(@Nullable ResponseCache cache) {
+        this.client = null;
+        this.cache = cache;
+    }
+
+    /**
+     * Enables rate limiting and retries. Must be called before the downloader is used.
+     *
+     * @param limiter    The limiter requests are scheduled through, or null to disable both.
+     * @param maxRetries The maximum number of retries of a single request.
+     */
+    public void setRateLimiter(@Nullable RateLimiter limiter, int maxRetries) {
+        this.rateLimiter = limiter;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Enables conditional GET requests. Must be called before the downloader is used.
+     *
+     * @param store The store of validated responses, or null to disable revalidation.
+     */
+    public void setRevalidationStore(@Nullable RevalidationStore store) {
+        this.revalidationStore = store;
+    }
+
+    /**
+     * Limits how large a response body may be. Must be called before the downloader is used.
+     *
+     * @param maxBodySize The maximum decompressed body size in bytes, or 0 for no limit.
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Prints method, URL, status, duration and wire and decompressed body bytes of every network
+     * request to stderr. Must be called before the downloader is used.
+     *
+     * @param trace Whether to print a line per request.
+     */
+    public void setTrace(boolean trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Builds a client with an explicit connection pool, dispatcher limits and HTTP/2 preferred,
+     * so that parallel extractions multiplex over few connections.
+     *
+     * @param maxIdleConnections The number of idle connections kept in the pool.
+     * @param keepAliveSeconds   How long an idle connection is kept.
+     * @param maxRequests        The maximum number of concurrent requests.
+     * @param maxRequestsPerHost The maximum number of concurrent requests to a single host.
+     * @return The configured client.
+     */
+    public static OkHttpClient createClient(int maxIdleConnections, long keepAliveSeconds,
+                                            int maxRequests, int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher(Executors.newVirtualThreadPerTaskExecutor());
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .followRedirects(true)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                // Sends Accept-Encoding: br,gzip and decodes either, unless a request sets its own
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .build();
     }
 
     @Override
     public Response execute(Request request) throws IOException, ReCaptchaException {
+        if (cache == null) {
+            return fetchRevalidated(request);
+        }
+
+        Response cached = cache.get(request);
+        if (cached != null) {
+            return cached;
+        }
+        Response response = fetchRevalidated(request);
+        cache.put(request, response);
+        return response;
+    }
+
+    /**
+     * @return Counters describing this downloader, keyed by component.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>();
+        if (cache != null) {
+            map.put("cache", cache.stats());
+        }
+
+        Map<String, Object> http = connectionMetrics.stats();
+        http.put("coalesced", coalesced.get());
+        http.put("inFlight", inFlight.size());
+        if (client != null) {
+            http.put("poolConnections", client.connectionPool().connectionCount());
+            http.put("poolIdleConnections", client.connectionPool().idleConnectionCount());
+            http.put("dispatcherRunning", client.dispatcher().runningCallsCount());
+            http.put("dispatcherQueued", client.dispatcher().queuedCallsCount());
+        }
+        map.put("http", http);
+
+        if (rateLimiter != null) {
+            map.put("rateLimit", rateLimiter.stats());
+        }
+        if (revalidationStore != null) {
+            map.put("revalidation", revalidationStore.stats());
+        }
+        return map;
+    }
+
+    /**
+     * Sends a GET request with the validators of the stored response and serves that response
+     * again when the server answers 304.
+     */
+    private Response fetchRevalidated(Request request) throws IOException, ReCaptchaException {
+        RevalidationStore store = revalidationStore;
+        if (store == null || !"GET".equals(request.httpMethod())) {
+            return fetchCoalesced(request);
+        }
+
+        Response stored = store.get(request);
+        if (stored == null) {
+            Response response = fetchCoalesced(request);
+            store.update(request, response, false);
+            return response;
+        }
+
+        // The original headers already carry the localization, so it is not added again
+        Request conditional = new Request(request.httpMethod(), request.url(),
+                RevalidationStore.conditionalHeaders(request, stored), null, request.localization(), false);
+        Response response = fetchCoalesced(conditional);
+        store.update(request, response, true);
+        return response.responseCode() == 304 ? stored : response;
+    }
+
+    /**
+     * Joins an identical in-flight GET or HEAD request instead of sending another one. When the
+     * leading caller is interrupted, its cancellation is not shared: the joined callers retry,
+     * and one of them sends the request again.
+     */
+    private Response fetchCoalesced(Request request) throws IOException, ReCaptchaException {
+        String method = request.httpMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return fetchScheduled(request);
+        }
+
+        String key = method + ' ' + request.url() + ' ' + new TreeMap<>(request.headers());
+        while (true) {
+            CompletableFuture<Response> created = new CompletableFuture<>();
+            CompletableFuture<Response> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                Response response = await(existing, null);
+                if (response != null) {
+                    return response;
+                }
+                // The leader was cancelled
+                continue;
+            }
+
+            try {
+                Response response = fetchScheduled(request);
+                created.complete(response);
+                return response;
+            } catch (InterruptedIOException e) {
+                if (!isCancellation(e)) {
+                    created.completeExceptionally(e);
+                } else {
+                    // Removed first, so the retrying callers do not find this future again
+                    inFlight.remove(key, created);
+                    created.complete(null);
+                }
+                throw e;
+            } catch (IOException | ReCaptchaException | RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, created);
+            }
+        }
+    }
+
+    /**
+     * Sends the request through the rate limiter, retrying throttled and failed attempts. I/O
+     * errors, timeouts included, and 5xx responses are only retried for GET and HEAD, since the
+     * server may already have acted on other methods; 429 is retried for every method. Oversized
+     * bodies fail on the first attempt, the next one would be just as large.
+     */
+    private Response fetchScheduled(Request request) throws IOException, ReCaptchaException {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return fetch(request);
+        }
+
+        String host = hostOf(request.url());
+        boolean idempotent = "GET".equals(request.httpMethod()) || "HEAD".equals(request.httpMethod());
+        for (int attempt = 0; ; attempt++) {
+            limiter.acquire(host);
+
+            Response response;
+            try {
+                response = fetch(request);
+            } catch (ReCaptchaException e) {
+                limiter.onThrottled(host, 0);
+                throw e;
+            } catch (IOException e) {
+                if (isCancellation(e) || e instanceof ResponseTooLargeException
+                        || !idempotent || attempt >= maxRetries || !limiter.tryRetry()) {
+                    throw e;
+                }
+                sleep(backoffMillis(attempt, 0));
+                continue;
+            }
+
+            int code = response.responseCode();
+            if (code != 429 && code < 500) {
+                limiter.onSuccess(host);
+                return response;
+            }
+
+            long retryAfter = retryAfterMillis(response);
+            limiter.onThrottled(host, retryAfter);
+            if ((code != 429 && !idempotent) || attempt >= maxRetries || !limiter.tryRetry()) {
+                return response;
+            }
+            sleep(backoffMillis(attempt, retryAfter));
+        }
+    }
+
+    // SocketTimeoutException is an InterruptedIOException too, but a transient failure
+    private static boolean isCancellation(IOException e) {
+        return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException);
+    }
+
+    // Full jitter: a random delay up to the exponential bound, but never shorter than Retry-After
+    private static long backoffMillis(int attempt, long retryAfterMillis) {
+        long bound = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+        return Math.max(retryAfterMillis, ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    /**
+     * Parses Retry-After given either as delay in seconds or as HTTP date.
+     */
+    private static long retryAfterMillis(Response response) {
+        for (Map.Entry<String, List<String>> header : response.responseHeaders().entrySet()) {
+            if (!"Retry-After".equalsIgnoreCase(header.getKey()) || header.getValue().isEmpty()) {
+                continue;
+            }
+            String value = header.getValue().get(0).trim();
+            try {
+                return Math.min(BACKOFF_MAX_MILLIS, Long.parseLong(value) * 1000);
+            } catch (NumberFormatException e) {
+                try {
+                    long delay = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                            - System.currentTimeMillis();
+                    return Math.min(BACKOFF_MAX_MILLIS, Math.max(0, delay));
+                } catch (DateTimeParseException ignored) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String hostOf(String url) {
+        HttpUrl parsed = HttpUrl.parse(url);
+        return parsed != null ? parsed.host() : "";
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during backoff");
+        }
+    }
+
+    private Response fetch(Request request) throws IOException, ReCaptchaException {
+        ConnectionMetrics.Transfer transfer = new ConnectionMetrics.Transfer();
         Builder builder = new Builder()
                 .url(request.url())
-                .method(request.httpMethod(), createRequestBody(request));
+                .method(request.httpMethod(), createRequestBody(request))
+                .tag(ConnectionMetrics.Transfer.class, transfer);
 
         // Add headers
         for (Map.Entry<String, List<String>> entry : request.headers().entrySet()) {
@@ -45,24 +415,121 @@ public class Downloader extends org.schabi.newpipe.extractor.downloader.Download
 
         okhttp3.Request okRequest = builder.build();
 
-        try (okhttp3.Response okResponse = client.newCall(okRequest).execute()) {
+        if (client == null) {
+            throw new IllegalStateException("This downloader has no HTTP client");
+        }
+        Call call = client.newCall(okRequest);
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        long start = System.nanoTime();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Metrics.record(Metrics.HTTP, start);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response okResponse) {
+                Metrics.recordStatus(okResponse.code());
+                try {
+                    Response response = toResponse(request, okResponse, transfer);
+                    Metrics.record(Metrics.HTTP, start);
+                    if (trace) {
+                        trace(request, response.responseCode(), transfer, start);
+                    }
+                    future.complete(response);
+                } catch (IOException | ReCaptchaException | RuntimeException e) {
+                    Metrics.record(Metrics.HTTP, start);
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return await(future, call);
+    }
+
+    private static Response await(CompletableFuture<Response> future, @Nullable Call call)
+            throws IOException, ReCaptchaException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (call != null) {
+                call.cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ReCaptchaException) {
+                throw (ReCaptchaException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Response toResponse(Request request, okhttp3.Response response, ConnectionMetrics.Transfer transfer)
+            throws IOException, ReCaptchaException {
+        try (okhttp3.Response okResponse = response) {
             int code = okResponse.code();
             String body = null;
 
             ResponseBody responseBody = okResponse.body();
             if (responseBody != null) {
-                body = responseBody.string();
-            }
+                Buffer buffer = readBounded(request, responseBody);
+                transfer.bodyBytes = buffer.size();
+                Metrics.recordBodyBytes(buffer.size());
 
-            // Handle Recaptcha (NewPipe uses this for YouTube sometimes)
-            if (code == 429 && body != null && body.contains("https://www.google.com/recaptcha")) {
-                throw new ReCaptchaException("ReCaptcha challenge detected", request.url());
+                // Handle Recaptcha (NewPipe uses this for YouTube sometimes)
+                if (code == 429 && buffer.snapshot((int) Math.min(buffer.size(), RECAPTCHA_SCAN_BYTES))
+                        .indexOf(RECAPTCHA_MARKER) >= 0) {
+                    throw new ReCaptchaException("ReCaptcha challenge detected", request.url());
+                }
+
+                MediaType contentType = responseBody.contentType();
+                body = buffer.readString(contentType != null
+                        ? contentType.charset(StandardCharsets.UTF_8)
+                        : StandardCharsets.UTF_8);
             }
 
             return new Response(code, okResponse.message(), okResponse.headers().toMultimap(), body, request.url());
         }
     }
 
+    /**
+     * Buffers the whole body, failing as soon as it is known to exceed the maximum size.
+     *
+     * @throws ResponseTooLargeException If the body is larger than the maximum size.
+     */
+    private Buffer readBounded(Request request, ResponseBody responseBody) throws IOException {
+        long limit = maxBodySize > 0 ? maxBodySize : Long.MAX_VALUE - 1;
+        long declared = responseBody.contentLength();
+        if (declared > limit) {
+            throw new ResponseTooLargeException("Response body of " + declared + " bytes exceeds the limit of "
+                    + limit + " bytes: " + request.url());
+        }
+
+        BufferedSource source = responseBody.source();
+        // request() stops at the end of the body, so at most one byte more than allowed is buffered
+        if (source.request(limit + 1)) {
+            throw new ResponseTooLargeException("Response body exceeds the limit of " + limit + " bytes: " + request.url());
+        }
+        return source.getBuffer();
+    }
+
+    private static void trace(Request request, int status, ConnectionMetrics.Transfer transfer, long startNanos) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("method", request.httpMethod());
+        map.put("url", request.url());
+        map.put("status", status);
+        map.put("ms", (System.nanoTime() - startNanos) / 1e6);
+        map.put("wireBytes", transfer.wireBytes);
+        map.put("bodyBytes", transfer.bodyBytes);
+        System.err.println(JsonWriter.string(Map.of("http", map)));
+    }
+
     private RequestBody createRequestBody(Request request) {
         if (request.dataToSend() == null || Objects.requireNonNull(request.dataToSend()).length == 0) {
             return null;
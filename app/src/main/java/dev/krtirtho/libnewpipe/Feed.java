@@ -0,0 +1,125 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonWriter;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.feed.FeedInfo;
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.services.youtube.YoutubeService;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Polls the upload feeds of many channels concurrently and merges them into one list, newest
+ * first.
+ * <p>
+ * Feeds are small documents that rarely change, so this pairs well with a
+ * {@link RevalidationStore} on the {@link Downloader}: an unchanged feed is answered with
+ * {@code 304 Not Modified} and parsed from the stored copy.
+ */
+public final class Feed {
+
+    /**
+     * Number of feeds fetched at the same time when none is configured.
+     */
+    public static final int DEFAULT_PARALLELISM = 32;
+
+    private static final String CHANNEL_URL = "https://www.youtube.com/channel/";
+
+    // Prevent instantiation for a utility class
+    private Feed() {
+    }
+
+    /**
+     * Fetches every feed on its own virtual thread, with at most {@code parallelism} in flight,
+     * then writes the items of all feeds ordered by upload date, newest first. Items without an
+     * upload date come last. A channel whose feed fails is reported on stderr and skipped.
+     *
+     * @param channels    Channel IDs ({@code UC...}) or channel URLs.
+     * @param parallelism The maximum number of concurrent feed requests.
+     * @param limit       The maximum number of items to write.
+     * @param fields      The projection applied to every item.
+     * @param writer      Receives one record per item.
+     * @return The number of items written.
+     */
+    public static int aggregate(List<String> channels, int parallelism, int limit, Fields fields, RecordWriter writer)
+            throws IOException {
+        YoutubeService service = NewPipe.getService();
+
+        // Indexed by channel, so equal upload dates keep the order of the channel list
+        AtomicReferenceArray<List<StreamInfoItem>> feeds = new AtomicReferenceArray<>(channels.size());
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < channels.size(); i++) {
+                int index = i;
+                String channel = channels.get(i);
+                executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        feeds.set(index, fetch(service, channel));
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                });
+            }
+        }
+
+        List<StreamInfoItem> items = new ArrayList<>();
+        for (int i = 0; i < feeds.length(); i++) {
+            List<StreamInfoItem> feed = feeds.get(i);
+            if (feed != null) {
+                items.addAll(feed);
+            }
+        }
+        items.sort(Comparator.comparing(Feed::uploadTime, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        int written = 0;
+        for (StreamInfoItem item : items) {
+            if (written >= limit) {
+                break;
+            }
+            writer.write((out, key) -> StreamingConvert.streamInfoItem(out, key, fields, item));
+            written++;
+        }
+        return written;
+    }
+
+    private static List<StreamInfoItem> fetch(YoutubeService service, String channel) {
+        try {
+            long start = System.nanoTime();
+            FeedInfo info = FeedInfo.getInfo(service, channelUrl(channel));
+            Metrics.record(Metrics.EXTRACT, start);
+            return info.getRelatedItems();
+        } catch (ExtractionException | IOException | RuntimeException e) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("channel", channel);
+            error.put("error", String.valueOf(e.getMessage()));
+            System.err.println(JsonWriter.string(error));
+            return List.of();
+        }
+    }
+
+    private static String channelUrl(String channel) {
+        return channel.startsWith("http://") || channel.startsWith("https://") ? channel : CHANNEL_URL + channel;
+    }
+
+    @Nullable
+    private static OffsetDateTime uploadTime(StreamInfoItem item) {
+        DateWrapper date = item.getUploadDate();
+        return date != null ? date.offsetDateTime() : null;
+    }
+}
@@ -0,0 +1,101 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A projection of the output, parsed from dotted paths such as
+ * {@code name,audioStreams.content,audioStreams.bitrate}.
+ * <p>
+ * Naming an object or array selects it entirely, naming nested paths selects only those children.
+ * Paths below an array apply to each of its elements. {@link StreamingConvert} consults the
+ * projection before reading a field, so unselected data is neither computed nor written.
+ */
+public final class Fields {
+
+    /**
+     * Selects everything.
+     */
+    public static final Fields ALL = new Fields(null);
+
+    // null means every key is selected
+    @Nullable
+    private final Map<String, Fields> children;
+
+    private Fields(@Nullable Map<String, Fields> children) {
+        this.children = children;
+    }
+
+    /**
+     * Parses a list of dotted paths. Each entry may itself be a comma-separated list.
+     *
+     * @param paths The requested paths. An empty list selects everything.
+     * @return The parsed projection.
+     */
+    public static Fields parse(List<String> paths) {
+        Map<String, Object> tree = new HashMap<>();
+        boolean any = false;
+        for (String entry : paths) {
+            for (String path : entry.split(",")) {
+                if (!path.isBlank()) {
+                    add(tree, path.trim().split("\\."), 0);
+                    any = true;
+                }
+            }
+        }
+        return any ? build(tree) : ALL;
+    }
+
+    /**
+     * @return Whether the given key is selected at this level.
+     */
+    public boolean has(String key) {
+        return children == null || children.containsKey(key);
+    }
+
+    /**
+     * @return The projection to apply below the given key.
+     */
+    public Fields child(String key) {
+        if (children == null) {
+            return ALL;
+        }
+        Fields child = children.get(key);
+        return child != null ? child : ALL;
+    }
+
+    public boolean isAll() {
+        return children == null;
+    }
+
+    // A leaf is stored as ALL, a branch as a nested map; selecting a whole key overrides its branch
+    @SuppressWarnings("unchecked")
+    private static void add(Map<String, Object> tree, String[] parts, int index) {
+        String key = parts[index];
+        if (index == parts.length - 1) {
+            tree.put(key, ALL);
+            return;
+        }
+        Object existing = tree.get(key);
+        if (existing == ALL) {
+            return;
+        }
+        Map<String, Object> branch = existing != null ? (Map<String, Object>) existing : new HashMap<>();
+        tree.put(key, branch);
+        add(branch, parts, index + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Fields build(Map<String, Object> tree) {
+        Map<String, Fields> children = new HashMap<>();
+        for (Map.Entry<String, Object> entry : tree.entrySet()) {
+            children.put(entry.getKey(), entry.getValue() == ALL
+                    ? ALL
+                    : build((Map<String, Object>) entry.getValue()));
+        }
+        return new Fields(children);
+    }
+}
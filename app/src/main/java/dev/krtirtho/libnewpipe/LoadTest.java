@@ -0,0 +1,193 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonWriter;
+
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a fixed number of extractions through the configured downloader with a given
+ * concurrency and reports throughput and latency percentiles. Combined with
+ * {@link ReplayDownloader} this measures the extraction pipeline reproducibly and offline.
+ * <p>
+ * Extractions bypass the stream cache, so every one of them runs the extractor. For soak runs,
+ * the resident set size and Java heap usage can be sampled periodically, which shows whether
+ * memory levels off or keeps growing under the garbage collector the binary was built with.
+ */
+public final class LoadTest {
+
+    public static final int DEFAULT_REQUESTS = 100;
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    // Prevent instantiation for a utility class
+    private LoadTest() {
+    }
+
+    /**
+     * Runs the load test. Work items are handed out round-robin from the video IDs followed by
+     * the search queries.
+     *
+     * @param videoIds    Videos extracted with {@code StreamInfo.getInfo}.
+     * @param queries     Queries run with {@code SearchInfo.getInfo}.
+     * @param requests    The total number of extractions.
+     * @param concurrency The number of extractions running at the same time.
+     * @param sampleMillis The interval of memory samples written to the output, or 0 for none.
+     * @param output       Receives one {@code {"sample": ...}} line per memory sample.
+     * @return Counts, duration, throughput and latency percentiles overall and per kind, plus
+     * peak and final memory usage.
+     */
+    public static Map<String, Object> run(List<String> videoIds, List<String> queries, int requests, int concurrency,
+                                          long sampleMillis, RecordWriter output) {
+        List<String[]> work = new ArrayList<>();
+        for (String id : videoIds) {
+            work.add(new String[]{"streams", id});
+        }
+        for (String query : queries) {
+            work.add(new String[]{"search", query});
+        }
+        if (work.isEmpty()) {
+            throw new IllegalArgumentException("The load test needs --streams, --streams-file or --search");
+        }
+
+        // Initialize outside the measurement so the first requests are not skewed by it
+        NewPipe.getService();
+
+        long[] latencies = new long[requests];
+        String[] kinds = new String[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+
+        long start = System.nanoTime();
+        AtomicLong completed = new AtomicLong();
+        AtomicLong peakRss = new AtomicLong();
+        Thread sampler = sampleMillis > 0
+                ? Thread.ofVirtual().start(() -> sample(start, sampleMillis, completed, peakRss, output))
+                : null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < requests) {
+                        String[] item = work.get(index % work.size());
+                        long itemStart = System.nanoTime();
+                        try {
+                            if (item[0].equals("streams")) {
+                                NewPipe.fetchStream(item[1]);
+                            } else {
+                                NewPipe.searchInfo(item[1], List.of(), null);
+                            }
+                        } catch (ExtractionException | IOException | RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[index] = System.nanoTime() - itemStart;
+                        kinds[index] = item[0];
+                        completed.incrementAndGet();
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sampler != null) {
+            sampler.interrupt();
+        }
+
+        Map<String, List<Long>> byKind = new HashMap<>();
+        for (int i = 0; i < requests; i++) {
+            byKind.computeIfAbsent(kinds[i], k -> new ArrayList<>()).add(latencies[i]);
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("requests", requests);
+        map.put("concurrency", concurrency);
+        map.put("errors", errors.get());
+        map.put("seconds", elapsed / 1e9);
+        map.put("throughput", requests / (elapsed / 1e9));
+        map.putAll(percentiles(latencies));
+        long rss = residentSetSize();
+        map.put("rssBytes", rss);
+        map.put("peakRssBytes", Math.max(peakRss.get(), rss));
+        map.put("heapUsedBytes", Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        for (Map.Entry<String, List<Long>> entry : byKind.entrySet()) {
+            long[] values = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            Map<String, Object> kind = new LinkedHashMap<>();
+            kind.put("requests", values.length);
+            kind.putAll(percentiles(values));
+            map.put(entry.getKey(), kind);
+        }
+        return map;
+    }
+
+    private static void sample(long start, long intervalMillis, AtomicLong completed, AtomicLong peakRss,
+                               RecordWriter output) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(intervalMillis);
+                long rss = residentSetSize();
+                peakRss.accumulateAndGet(rss, Math::max);
+
+                Runtime runtime = Runtime.getRuntime();
+                Map<String, Object> sample = new LinkedHashMap<>();
+                sample.put("seconds", (System.nanoTime() - start) / 1e9);
+                sample.put("completed", completed.get());
+                sample.put("rssBytes", rss);
+                sample.put("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+                sample.put("heapCommittedBytes", runtime.totalMemory());
+                output.write(Map.of("sample", sample));
+            }
+        } catch (InterruptedException e) {
+            // The run is over
+        } catch (IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    /**
+     * @return The resident set size from {@code /proc/self/status}, or 0 where that is unavailable.
+     */
+    static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    // Reported as "VmRSS:     12345 kB"
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        return 0;
+    }
+
+    private static Map<String, Object> percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("p50Ms", percentile(sorted, 0.5));
+        map.put("p99Ms", percentile(sorted, 0.99));
+        map.put("maxMs", sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0);
+        return map;
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,221 @@
+package dev.krtirtho.libnewpipe;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency histograms and HTTP counters.
+ * <p>
+ * Phases are recorded where they happen: {@link #INIT} around service initialization,
+ * {@link #HTTP} around every network request of the {@link Downloader}, {@link #EXTRACT} around
+ * the extractor calls (this includes the HTTP time they wait for), {@link #CONVERT} around the
+ * Map conversion of {@link Convert} and {@link #SERIALIZE} around writing an output record.
+ * {@link StreamingConvert} reads the extractor objects while writing, so on that path conversion
+ * is part of serialization.
+ */
+public final class Metrics {
+
+    public static final String INIT = "init";
+    public static final String HTTP = "http";
+    public static final String EXTRACT = "extract";
+    public static final String CONVERT = "convert";
+    public static final String SERIALIZE = "serialize";
+
+    // Upper bounds of the histogram buckets in milliseconds; a final bucket catches the rest
+    private static final double[] BOUNDS_MILLIS = {1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final Map<String, Histogram> PHASES = new ConcurrentHashMap<>();
+    private static final Map<Integer, LongAdder> STATUS_CODES = new ConcurrentHashMap<>();
+    private static final LongAdder BYTES_RECEIVED = new LongAdder();
+    private static final LongAdder BODY_BYTES = new LongAdder();
+
+    // Prevent instantiation for a utility class
+    private Metrics() {
+    }
+
+    /**
+     * A cumulative histogram with fixed, roughly logarithmic buckets.
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            double millis = nanos / 1e6;
+            int index = 0;
+            while (index < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[index]) {
+                index++;
+            }
+            buckets[index].increment();
+            count.increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        // The upper bound of the bucket holding the given quantile, or the maximum for the last one
+        double quantileMillis(double quantile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return Math.min(BOUNDS_MILLIS[i], maxNanos.get() / 1e6);
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        Map<String, Object> summary() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count.sum());
+            map.put("totalMs", sumNanos.sum() / 1e6);
+            map.put("p50Ms", quantileMillis(0.5));
+            map.put("p99Ms", quantileMillis(0.99));
+            map.put("maxMs", maxNanos.get() / 1e6);
+            return map;
+        }
+    }
+
+    /**
+     * Records the duration of a phase that began at the given time.
+     *
+     * @param phase      The phase name, one of the constants of this class.
+     * @param startNanos The {@link System#nanoTime()} at which the phase began.
+     */
+    public static void record(String phase, long startNanos) {
+        PHASES.computeIfAbsent(phase, p -> new Histogram()).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a completed HTTP request in addition to its {@link #HTTP} duration.
+     *
+     * @param status The response status code.
+     */
+    public static void recordStatus(int status) {
+        STATUS_CODES.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param bytes The number of response body bytes read from the network.
+     */
+    public static void recordBytes(long bytes) {
+        BYTES_RECEIVED.add(bytes);
+    }
+
+    /**
+     * @param bytes The size of a response body after decompression.
+     */
+    public static void recordBodyBytes(long bytes) {
+        BODY_BYTES.add(bytes);
+    }
+
+    /**
+     * @return Count, total, p50, p99 and maximum duration per phase plus HTTP counters.
+     */
+    public static Map<String, Object> summary() {
+        Map<String, Object> phases = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : PHASES.entrySet()) {
+            phases.put(entry.getKey(), entry.getValue().summary());
+        }
+
+        Map<String, Object> status = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : STATUS_CODES.entrySet()) {
+            status.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("phases", phases);
+        map.put("httpStatus", status);
+        map.put("httpBytesReceived", BYTES_RECEIVED.sum());
+        map.put("httpBodyBytes", BODY_BYTES.sum());
+        return map;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     *
+     * @return The exposition, ending with a newline.
+     */
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP newpipe_phase_seconds Duration of processing phases.\n");
+        out.append("# TYPE newpipe_phase_seconds histogram\n");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(PHASES).entrySet()) {
+            String phase = entry.getKey();
+            Histogram histogram = entry.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+                cumulative += histogram.buckets[i].sum();
+                out.append("newpipe_phase_seconds_bucket{phase=\"").append(phase)
+                        .append("\",le=\"").append(BOUNDS_MILLIS[i] / 1000).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("newpipe_phase_seconds_bucket{phase=\"").append(phase)
+                    .append("\",le=\"+Inf\"} ").append(histogram.count.sum()).append('\n');
+            out.append("newpipe_phase_seconds_sum{phase=\"").append(phase).append("\"} ")
+                    .append(histogram.sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+            out.append("newpipe_phase_seconds_count{phase=\"").append(phase).append("\"} ")
+                    .append(histogram.count.sum()).append('\n');
+        }
+
+        out.append("# HELP newpipe_http_responses_total HTTP responses by status code.\n");
+        out.append("# TYPE newpipe_http_responses_total counter\n");
+        for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(STATUS_CODES).entrySet()) {
+            out.append("newpipe_http_responses_total{code=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+
+        out.append("# HELP newpipe_http_received_bytes_total Response body bytes read from the network.\n");
+        out.append("# TYPE newpipe_http_received_bytes_total counter\n");
+        out.append("newpipe_http_received_bytes_total ").append(BYTES_RECEIVED.sum()).append('\n');
+
+        out.append("# HELP newpipe_http_body_bytes_total Response body bytes after decompression.\n");
+        out.append("# TYPE newpipe_http_body_bytes_total counter\n");
+        out.append("newpipe_http_body_bytes_total ").append(BODY_BYTES.sum()).append('\n');
+        return out.toString();
+    }
+
+    /**
+     * Starts a background HTTP server answering {@code GET /metrics} with {@link #prometheus()}.
+     *
+     * @param port The loopback port to listen on.
+     * @return The started server.
+     */
+    public static HttpServer serveHttp(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                byte[] body = prometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,175 @@
+package dev.krtirtho.libnewpipe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes MessagePack. Its arrays and maps are prefixed with their element count, so each open
+ * container is buffered until it ends; scalars outside containers go straight to the output.
+ * Consecutive top-level values form a plain MessagePack stream. Doubles that are exactly
+ * representable as floats are written as float 32.
+ */
+public class MsgpackSink extends BinarySink {
+
+    private static final class Container {
+        final boolean map;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int count;
+
+        Container(boolean map) {
+            this.map = map;
+        }
+    }
+
+    private final OutputStream base;
+    private final Deque<Container> open = new ArrayDeque<>();
+
+    public MsgpackSink(OutputStream out) {
+        this.base = out;
+    }
+
+    private OutputStream out() {
+        Container current = open.peek();
+        return current != null ? current.buffer : base;
+    }
+
+    @Override
+    protected void beforeValue() {
+        Container current = open.peek();
+        if (current != null && !current.map) {
+            current.count++;
+        }
+    }
+
+    @Override
+    protected void writeKey(String key) throws IOException {
+        Container current = open.peek();
+        if (current != null) {
+            current.count++;
+        }
+        writeString(key);
+    }
+
+    @Override
+    public void done() throws IOException {
+        if (!open.isEmpty()) {
+            throw new IOException("Unclosed MessagePack container");
+        }
+    }
+
+    @Override
+    protected void writeNull() throws IOException {
+        out().write(0xc0);
+    }
+
+    @Override
+    protected void writeBoolean(boolean value) throws IOException {
+        out().write(value ? 0xc3 : 0xc2);
+    }
+
+    @Override
+    protected void writeLong(long value) throws IOException {
+        OutputStream out = out();
+        if (value >= 0) {
+            if (value < 0x80) {
+                out.write((int) value);
+            } else if (value <= 0xff) {
+                out.write(0xcc);
+                writeBigEndian(out, value, 1);
+            } else if (value <= 0xffff) {
+                out.write(0xcd);
+                writeBigEndian(out, value, 2);
+            } else if (value <= 0xffffffffL) {
+                out.write(0xce);
+                writeBigEndian(out, value, 4);
+            } else {
+                out.write(0xcf);
+                writeBigEndian(out, value, 8);
+            }
+        } else if (value >= -32) {
+            out.write((int) value & 0xff);
+        } else if (value >= Byte.MIN_VALUE) {
+            out.write(0xd0);
+            writeBigEndian(out, value, 1);
+        } else if (value >= Short.MIN_VALUE) {
+            out.write(0xd1);
+            writeBigEndian(out, value, 2);
+        } else if (value >= Integer.MIN_VALUE) {
+            out.write(0xd2);
+            writeBigEndian(out, value, 4);
+        } else {
+            out.write(0xd3);
+            writeBigEndian(out, value, 8);
+        }
+    }
+
+    @Override
+    protected void writeDouble(double value) throws IOException {
+        OutputStream out = out();
+        float single = (float) value;
+        if (single == value || Double.isNaN(value)) {
+            out.write(0xca);
+            writeBigEndian(out, Float.floatToIntBits(single), 4);
+        } else {
+            out.write(0xcb);
+            writeBigEndian(out, Double.doubleToLongBits(value), 8);
+        }
+    }
+
+    @Override
+    protected void writeString(String value) throws IOException {
+        OutputStream out = out();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        if (length < 32) {
+            out.write(0xa0 | length);
+        } else if (length <= 0xff) {
+            out.write(0xd9);
+            writeBigEndian(out, length, 1);
+        } else if (length <= 0xffff) {
+            out.write(0xda);
+            writeBigEndian(out, length, 2);
+        } else {
+            out.write(0xdb);
+            writeBigEndian(out, length, 4);
+        }
+        out.write(bytes);
+    }
+
+    @Override
+    protected void writeStartArray() {
+        open.push(new Container(false));
+    }
+
+    @Override
+    protected void writeStartObject() {
+        open.push(new Container(true));
+    }
+
+    @Override
+    protected void writeEnd() throws IOException {
+        Container container = open.pop();
+        OutputStream out = out();
+        int count = container.count;
+        if (count < 16) {
+            out.write((container.map ? 0x80 : 0x90) | count);
+        } else if (count <= 0xffff) {
+            out.write(container.map ? 0xde : 0xdc);
+            writeBigEndian(out, count, 2);
+        } else {
+            out.write(container.map ? 0xdf : 0xdd);
+            writeBigEndian(out, count, 4);
+        }
+        container.buffer.writeTo(out);
+    }
+
+    private static void writeBigEndian(OutputStream out, long value, int bytes) throws IOException {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonWriter;
+
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.UnmanagedMemory;
+import org.graalvm.nativeimage.c.function.CEntryPoint;
+import org.graalvm.nativeimage.c.type.CCharPointer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The C API of the shared library build.
+ * <p>
+ * The host creates one isolate with {@code graal_create_isolate} and passes its thread to every
+ * call, so the service, HTTP client and caches initialized by the first call are reused by all
+ * later ones. Other host threads attach with {@code graal_attach_thread}. Every function returns
+ * a NUL-terminated UTF-8 JSON object holding either a {@code result} or an {@code error}, the
+ * same envelope as in {@link Server}. The buffer belongs to the caller, who releases it with
+ * {@code newpipe_free}.
+ */
+public final class NativeApi {
+
+    // Prevent instantiation for a utility class
+    private NativeApi() {
+    }
+
+    /**
+     * Extracts a video.
+     *
+     * @param thread  The current isolate thread.
+     * @param videoId The video ID or URL.
+     * @param fields  Comma-separated paths to include, or NULL for everything.
+     * @return A caller-owned JSON buffer.
+     */
+    @CEntryPoint(name = "newpipe_stream_info")
+    public static CCharPointer streamInfo(IsolateThread thread, CCharPointer videoId, CCharPointer fields) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("command", "streams");
+        request.put("videoId", toJavaString(videoId));
+        request.put("fields", splitList(toJavaString(fields)));
+        return call(request);
+    }
+
+    /**
+     * Runs a search and returns the first result page.
+     *
+     * @param thread         The current isolate thread.
+     * @param query          The search query.
+     * @param contentFilters Comma-separated content filters, or NULL.
+     * @param sortFilter     The sort filter, or NULL.
+     * @param fields         Comma-separated paths to include, or NULL for everything.
+     * @return A caller-owned JSON buffer.
+     */
+    @CEntryPoint(name = "newpipe_search")
+    public static CCharPointer search(IsolateThread thread, CCharPointer query, CCharPointer contentFilters,
+                                      CCharPointer sortFilter, CCharPointer fields) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("command", "search");
+        request.put("query", toJavaString(query));
+        request.put("contentFilters", splitList(toJavaString(contentFilters)));
+        request.put("sortFilter", toJavaString(sortFilter));
+        request.put("fields", splitList(toJavaString(fields)));
+        return call(request);
+    }
+
+    /**
+     * Runs any command understood by {@link Server}, given as a JSON object.
+     *
+     * @param thread  The current isolate thread.
+     * @param request The JSON request, e.g. {@code {"command": "stats"}}.
+     * @return A caller-owned JSON buffer.
+     */
+    @CEntryPoint(name = "newpipe_call")
+    public static CCharPointer call(IsolateThread thread, CCharPointer request) {
+        return handle(toJavaString(request));
+    }
+
+    /**
+     * Releases a buffer returned by any of the other functions.
+     *
+     * @param thread The current isolate thread.
+     * @param buffer The buffer to free. NULL is ignored.
+     */
+    @CEntryPoint(name = "newpipe_free")
+    public static void free(IsolateThread thread, CCharPointer buffer) {
+        if (buffer.isNonNull()) {
+            UnmanagedMemory.free(buffer);
+        }
+    }
+
+    private static CCharPointer call(Map<String, Object> request) {
+        return handle(JsonWriter.string(request));
+    }
+
+    // Exceptions must not escape an entry point, they would terminate the host process
+    private static CCharPointer handle(String line) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            Server.handle(line, new RecordWriter(out));
+        } catch (IOException | RuntimeException | Error e) {
+            return toCString(JsonWriter.string(Map.of("error", String.valueOf(e))));
+        }
+        byte[] bytes = out.toByteArray();
+        // Drop the line terminator of the NDJSON record
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\n' ? bytes.length - 1 : bytes.length;
+        return toCString(Arrays.copyOf(bytes, length));
+    }
+
+    private static List<String> splitList(@Nullable String value) {
+        List<String> list = new ArrayList<>();
+        if (value != null) {
+            for (String part : value.split(",")) {
+                if (!part.isBlank()) {
+                    list.add(part.trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    @Nullable
+    private static String toJavaString(CCharPointer pointer) {
+        if (pointer.isNull()) {
+            return null;
+        }
+        int length = 0;
+        while (pointer.read(length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = pointer.read(i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static CCharPointer toCString(String value) {
+        return toCString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CCharPointer toCString(byte[] bytes) {
+        CCharPointer buffer = UnmanagedMemory.malloc(bytes.length + 1);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.write(i, bytes[i]);
+        }
+        buffer.write(bytes.length, (byte) 0);
+        return buffer;
+    }
+}
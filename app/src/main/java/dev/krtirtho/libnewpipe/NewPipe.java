@@ -1,38 +1,127 @@
 package dev.krtirtho.libnewpipe;
 
 import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.exceptions.ContentNotSupportedException;
 import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.linkhandler.SearchQueryHandler;
 import org.schabi.newpipe.extractor.search.SearchInfo;
 import org.schabi.newpipe.extractor.services.youtube.YoutubeService;
+import org.schabi.newpipe.extractor.stream.StreamExtractor;
 import org.schabi.newpipe.extractor.stream.StreamInfo;
 
 import com.grack.nanojson.JsonWriter;
 
+import okhttp3.OkHttpClient;
+
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 
 public class NewPipe {
 
+    /**
+     * The output of {@code --resolve-only} unless {@code --fields} narrows it further.
+     */
+    public static final Fields RESOLVE_FIELDS = Fields.parse(List.of(
+            "id,url,name,streamType,duration,ageLimit,uploaderName,thumbnails",
+            "videoStreams,audioStreams,videoOnlyStreams,dashMpdUrl,hlsUrl"));
+
+    private static volatile YoutubeService service;
+    private static Downloader downloader;
+    @Nullable
+    private static StreamInfoCache streamCache;
+    @Nullable
+    private static SuggestionCache suggestionCache;
+    private static OutputFormat outputFormat = OutputFormat.JSON;
+
     public static void main(String[] args) {
         Map<String, List<String>> parsed = parseArgs(args);
+        try {
+            setDownloader(createDownloader(parsed));
+            streamCache = createStreamCache(parsed);
+            suggestionCache = createSuggestionCache(parsed);
+            outputFormat = OutputFormat.parse(getSingle(parsed, "--output-format"));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+            return;
+        }
 
         String streams = getSingle(parsed, "--streams");
+        List<String> streamIds = parsed.getOrDefault("--streams", List.of());
+        String streamsFile = getSingle(parsed, "--streams-file");
         String search = getSingle(parsed, "--search");
         List<String> contentFilters = parsed.getOrDefault("--content-filters", List.of());
         String sortFilter = getSingle(parsed, "--sort-filter");
+        Fields fields = Fields.parse(parsed.getOrDefault("--fields", List.of()));
 
-        if (streams != null) {
-            getVideoInfo(streams);
+        if (parsed.containsKey("--load-test")) {
+            loadTest(streamIds, streamsFile, parsed.getOrDefault("--search", List.of()),
+                    getInt(parsed, "--load-test", LoadTest.DEFAULT_REQUESTS),
+                    getInt(parsed, "--concurrency", LoadTest.DEFAULT_CONCURRENCY),
+                    getLong(parsed, "--sample-interval", 0) * 1000);
+        } else if (parsed.containsKey("--serve")) {
+            serve(getSingle(parsed, "--socket"), getInt(parsed, "--metrics-port", 0));
+        } else if (streamsFile != null || streamIds.size() > 1) {
+            batch(streamIds, streamsFile, getInt(parsed, "--parallelism", Batch.DEFAULT_PARALLELISM), fields);
+        } else if (streams != null && parsed.containsKey("--select")) {
+            selectStreams(streams, parsed.get("--select"), parsed.containsKey("--resolve-only"),
+                    parsed.containsKey("--fields") ? fields : StreamSelector.DEFAULT_FIELDS);
+        } else if (streams != null && parsed.containsKey("--resolve-only")) {
+            resolveVideo(streams, parsed.containsKey("--fields") ? fields : RESOLVE_FIELDS);
+        } else if (streams != null) {
+            getVideoInfo(streams, fields);
+        } else if (parsed.containsKey("--suggest")) {
+            suggest(parsed.get("--suggest"));
+        } else if (parsed.containsKey("--feed")) {
+            feed(parsed.getOrDefault("--feed", List.of()), getInt(parsed, "--parallelism", Feed.DEFAULT_PARALLELISM),
+                    getInt(parsed, "--limit", Integer.MAX_VALUE), fields);
+        } else if (parsed.containsKey("--playlist") || parsed.containsKey("--channel")) {
+            String checkpoint = getSingle(parsed, "--checkpoint");
+            crawl(getSingle(parsed, "--playlist"), getSingle(parsed, "--channel"),
+                    Objects.requireNonNullElse(getSingle(parsed, "--tab"), Crawler.DEFAULT_CHANNEL_TAB),
+                    fields, parsed.containsKey("--full"), getInt(parsed, "--parallelism", Batch.DEFAULT_PARALLELISM),
+                    getInt(parsed, "--pages", Integer.MAX_VALUE), getInt(parsed, "--limit", Integer.MAX_VALUE),
+                    checkpoint != null ? Path.of(checkpoint) : null);
+        } else if (search != null && (parsed.containsKey("--pages") || parsed.containsKey("--limit"))) {
+            searchPages(search, contentFilters, sortFilter, fields,
+                    getInt(parsed, "--pages", Integer.MAX_VALUE), getInt(parsed, "--limit", Integer.MAX_VALUE));
         } else if (search != null) {
-            search(search, contentFilters, sortFilter);
+            search(search, contentFilters, sortFilter, fields);
         } else {
             System.out.println("Usage:");
-            System.out.println("  --streams <url_or_id>");
-            System.out.println("  --search <query> [--content-filters f1 f2 ...] [--sort-filter sort]");
+            System.out.println("  --streams <url_or_id> [--resolve-only] [--select \"audio:best(bitrate) codec=opus\" \"video:height<=720 prefer=av1\" ...]");
+            System.out.println("  --streams <id1> <id2> ... | --streams-file <ids.txt> [--parallelism n]");
+            System.out.println("  --search <query> [--content-filters f1 f2 ...] [--sort-filter sort] [--pages n] [--limit k]");
+            System.out.println("  --playlist <url> | --channel <url> [--tab videos|shorts|livestreams|playlists] [--full [--parallelism n]] [--checkpoint <file>] [--pages n] [--limit k]");
+            System.out.println("  --suggest <prefix> [<prefix> ...] [--suggest-cache-size entries] [--suggest-cache-ttl seconds]");
+            System.out.println("  --feed <channels.txt> ... [--feed-state <dir>] [--parallelism n] [--limit k]");
+            System.out.println("  --serve [--socket <path>] [--metrics-port port]");
+            System.out.println("  --load-test [n] [--concurrency c] [--sample-interval seconds] with --streams/--streams-file ids and/or --search queries");
+            System.out.println("Options:");
+            System.out.println("  --cache-dir <dir> [--cache-max-size bytes] [--cache-ttl host[/path]=seconds ...]");
+            System.out.println("  --fields <path1,path2.child,...>");
+            System.out.println("  --output-format json|cbor|msgpack (records on stdout and in --serve responses, errors stay JSON)");
+            System.out.println("  --http-max-idle-connections n --http-keep-alive seconds --http-max-requests n --http-max-requests-per-host n");
+            System.out.println("  --max-body-size bytes (0 disables) --http-trace (wire and decoded bytes per request on stderr)");
+            System.out.println("  --record <dir> | --replay <dir> [--replay-latency ms] [--replay-jitter ms]");
+            System.out.println("  --rate-limit req/s (0 disables) [--rate-limit-max req/s] [--max-retries n] (POST is only retried after 429)");
+            System.out.println("  --stream-cache-dir <dir> [--stream-cache-size entries]");
+            System.out.println("  --stats (print downloader and cache counters to stderr when done)");
+            System.out.println("  --timings (print per-phase latencies and HTTP counters to stderr when done)");
+        }
+
+        if (parsed.containsKey("--stats")) {
+            System.err.println(JsonWriter.string(stats()));
+        }
+        if (parsed.containsKey("--timings")) {
+            System.err.println(JsonWriter.string(Map.of("timings", Metrics.summary())));
         }
     }
 
@@ -73,37 +162,505 @@ public class NewPipe {
         List<String> vals = map.get(key);
         return (vals != null && !vals.isEmpty()) ? vals.get(0) : null;
     }
+
+    private static long getLong(Map<String, List<String>> map, String key, long defaultValue) {
+        String value = getSingle(map, key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private static double getDouble(Map<String, List<String>> map, String key, double defaultValue) {
+        String value = getSingle(map, key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    private static int getInt(Map<String, List<String>> map, String key, int defaultValue) {
+        String value = getSingle(map, key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static Downloader createDownloader(Map<String, List<String>> parsed) throws IOException {
+        String replay = getSingle(parsed, "--replay");
+        if (replay != null) {
+            return new ReplayDownloader(new ResponseArchive(Path.of(replay)),
+                    getLong(parsed, "--replay-latency", 0), getLong(parsed, "--replay-jitter", 0));
+        }
+
+        OkHttpClient client = Downloader.createClient(
+                getInt(parsed, "--http-max-idle-connections", Downloader.DEFAULT_MAX_IDLE_CONNECTIONS),
+                getLong(parsed, "--http-keep-alive", Downloader.DEFAULT_KEEP_ALIVE_SECONDS),
+                getInt(parsed, "--http-max-requests", Downloader.DEFAULT_MAX_REQUESTS),
+                getInt(parsed, "--http-max-requests-per-host", Downloader.DEFAULT_MAX_REQUESTS_PER_HOST));
+
+        String cacheDir = getSingle(parsed, "--cache-dir");
+        ResponseCache cache = null;
+        if (cacheDir != null) {
+            cache = new ResponseCache(
+                    Path.of(cacheDir),
+                    getLong(parsed, "--cache-max-size", ResponseCache.DEFAULT_MAX_SIZE),
+                    ResponseCache.parseTtlRules(parsed.getOrDefault("--cache-ttl", List.of())));
+        }
+        String record = getSingle(parsed, "--record");
+        Downloader result = record != null
+                ? new RecordingDownloader(client, cache, new ResponseArchive(Path.of(record)))
+                : new Downloader(client, cache);
+
+        double rate = getDouble(parsed, "--rate-limit", RateLimiter.DEFAULT_INITIAL_RATE);
+        if (rate > 0) {
+            result.setRateLimiter(
+                    new RateLimiter(rate, getDouble(parsed, "--rate-limit-max", RateLimiter.DEFAULT_MAX_RATE)),
+                    getInt(parsed, "--max-retries", Downloader.DEFAULT_MAX_RETRIES));
+        }
+        result.setMaxBodySize(getLong(parsed, "--max-body-size", Downloader.DEFAULT_MAX_BODY_SIZE));
+        result.setTrace(parsed.containsKey("--http-trace"));
+        if (parsed.containsKey("--feed")) {
+            String state = getSingle(parsed, "--feed-state");
+            result.setRevalidationStore(new RevalidationStore(state != null
+                    ? Path.of(state)
+                    : Path.of(System.getProperty("user.home"), ".cache", "newpipe-cli", "feed")));
+        }
+        return result;
+    }
+
+    /**
+     * Suggestions are only worth caching when one process answers many prefixes.
+     */
+    @Nullable
+    private static SuggestionCache createSuggestionCache(Map<String, List<String>> parsed) {
+        if (!parsed.containsKey("--serve") && parsed.getOrDefault("--suggest", List.of()).size() <= 1) {
+            return null;
+        }
+        return new SuggestionCache(
+                getInt(parsed, "--suggest-cache-size", SuggestionCache.DEFAULT_MAX_ENTRIES),
+                getLong(parsed, "--suggest-cache-ttl", SuggestionCache.DEFAULT_TTL_SECONDS));
+    }
+
+    /**
+     * Extracted results are cached in memory whenever one process handles many requests,
+     * and additionally on disk when a directory is given.
+     */
+    @Nullable
+    private static StreamInfoCache createStreamCache(Map<String, List<String>> parsed) throws IOException {
+        String directory = getSingle(parsed, "--stream-cache-dir");
+        boolean resident = parsed.containsKey("--serve")
+                || parsed.containsKey("--streams-file")
+                || parsed.getOrDefault("--streams", List.of()).size() > 1;
+        if (directory == null && !resident) {
+            return null;
+        }
+        return new StreamInfoCache(
+                getInt(parsed, "--stream-cache-size", StreamInfoCache.DEFAULT_MAX_ENTRIES),
+                directory != null ? Path.of(directory) : null);
+    }
+
+    /**
+     * Sets the downloader the service is initialized with. Has no effect once the service exists.
+     *
+     * @param value The downloader to use instead of a default {@link Downloader}.
+     */
+    public static synchronized void setDownloader(Downloader value) {
+        downloader = value;
+    }
+
+    /**
+     * @return The downloader the service was or will be initialized with.
+     */
+    public static synchronized Downloader getDownloader() {
+        if (downloader == null) {
+            downloader = new Downloader();
+        }
+        return downloader;
+    }
+
+    /**
+     * Returns the shared YouTube service, initializing the extractor with a {@link Downloader}
+     * on first use. Later calls reuse the same service and HTTP client.
+     *
+     * @return The initialized YoutubeService.
+     */
     public static YoutubeService getService() {
-        org.schabi.newpipe.extractor.NewPipe.init(new Downloader());
+        YoutubeService current = service;
+        if (current != null) {
+            return current;
+        }
+        synchronized (NewPipe.class) {
+            if (service == null) {
+                long start = System.nanoTime();
+                org.schabi.newpipe.extractor.NewPipe.init(getDownloader());
+                try {
+                    service = (YoutubeService) org.schabi.newpipe.extractor.NewPipe.getService(0);
+                } catch (ExtractionException e) {
+                    throw new RuntimeException(e);
+                }
+                Metrics.record(Metrics.INIT, start);
+            }
+            return service;
+        }
+    }
+
+    /**
+     * Extracts a video and converts it into a generic Map.
+     *
+     * @param videoId The YouTube video ID.
+     * @return A Map as produced by {@link Convert#streamInfoMap(StreamInfo)}.
+     */
+    public static Map<String, Object> streamInfo(String videoId) throws ExtractionException, IOException {
+        StreamInfo info = extractStream(videoId);
+        long start = System.nanoTime();
+        Map<String, Object> map = Convert.streamInfoMap(info);
+        Metrics.record(Metrics.CONVERT, start);
+        return map;
+    }
+
+    /**
+     * Extracts a video, answering from the stream cache when one is configured.
+     *
+     * @param videoId The YouTube video ID.
+     * @return The extracted StreamInfo.
+     */
+    public static StreamInfo extractStream(String videoId) throws ExtractionException, IOException {
+        StreamInfoCache cache = streamCache;
+        return cache != null ? cache.get(videoId, NewPipe::fetchStream) : fetchStream(videoId);
+    }
+
+    static StreamInfo fetchStream(String videoId) throws ExtractionException, IOException {
+        YoutubeService service = getService();
+        long start = System.nanoTime();
+        StreamInfo info = StreamInfo.getInfo(service.getStreamExtractor(service.getStreamLHFactory().fromId(videoId)));
+        Metrics.record(Metrics.EXTRACT, start);
+        return info;
+    }
+
+    /**
+     * Extracts only what playback needs: the stream URLs and basic metadata. Unlike
+     * {@link StreamInfo#getInfo} this skips related items, description, tags, subtitles,
+     * segments, preview frames and meta info, and the result is not cached because it is
+     * incomplete. Fields that were not extracted keep their defaults, so output should be
+     * limited to {@link #RESOLVE_FIELDS}. A field that cannot be extracted is added to
+     * {@link StreamInfo#getErrors()} instead, and only a video without any stream list fails.
+     *
+     * @param videoId The YouTube video ID.
+     * @return A StreamInfo holding only the resolved fields.
+     */
+    public static StreamInfo resolveStream(String videoId) throws ExtractionException, IOException {
+        YoutubeService service = getService();
+        long start = System.nanoTime();
+        StreamExtractor extractor = service.getStreamExtractor(service.getStreamLHFactory().fromId(videoId));
+        extractor.fetchPage();
+
+        StreamInfo info = new StreamInfo(extractor.getServiceId(), extractor.getUrl(), extractor.getOriginalUrl(),
+                extractor.getStreamType(), extractor.getId(), extractor.getName(), extractor.getAgeLimit());
+
+        try {
+            info.setDuration(extractor.getLength());
+        } catch (Exception e) {
+            info.addError(e);
+        }
         try {
-            return (YoutubeService) org.schabi.newpipe.extractor.NewPipe.getService(0);
-        } catch (ExtractionException e) {
-            throw new RuntimeException(e);
+            info.setUploaderName(extractor.getUploaderName());
+        } catch (Exception e) {
+            info.addError(e);
+        }
+        try {
+            info.setThumbnails(extractor.getThumbnails());
+        } catch (Exception e) {
+            info.addError(e);
+        }
+        try {
+            info.setDashMpdUrl(extractor.getDashMpdUrl());
+        } catch (Exception e) {
+            info.addError(new ExtractionException("Couldn't get DASH manifest", e));
+        }
+        try {
+            info.setHlsUrl(extractor.getHlsUrl());
+        } catch (Exception e) {
+            info.addError(new ExtractionException("Couldn't get HLS manifest", e));
+        }
+
+        // Only fail when none of the stream lists could be extracted
+        int streamLists = 0;
+        try {
+            info.setAudioStreams(extractor.getAudioStreams());
+            streamLists++;
+        } catch (ContentNotSupportedException e) {
+            throw e;
+        } catch (Exception e) {
+            info.addError(new ExtractionException("Couldn't get audio streams", e));
+        }
+        try {
+            info.setVideoStreams(extractor.getVideoStreams());
+            streamLists++;
+        } catch (Exception e) {
+            info.addError(new ExtractionException("Couldn't get video streams", e));
+        }
+        try {
+            info.setVideoOnlyStreams(extractor.getVideoOnlyStreams());
+            streamLists++;
+        } catch (Exception e) {
+            info.addError(new ExtractionException("Couldn't get video only streams", e));
+        }
+        if (streamLists == 0) {
+            throw new ExtractionException("Could not get any stream list of " + videoId, info.getErrors().get(0));
+        }
+        Metrics.record(Metrics.EXTRACT, start);
+        return info;
+    }
+
+    /**
+     * @return Counters of the downloader and, when enabled, the stream cache.
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>(getDownloader().stats());
+        StreamInfoCache cache = streamCache;
+        if (cache != null) {
+            map.put("streamCache", cache.stats());
         }
+        SuggestionCache suggestions = suggestionCache;
+        if (suggestions != null) {
+            map.put("suggestionCache", suggestions.stats());
+        }
+        return map;
+    }
+
+    /**
+     * Runs a search and converts the first page of results into generic Maps.
+     *
+     * @param query          The search query.
+     * @param contentFilters Optional content filters.
+     * @param sortFilter     Optional sort filter.
+     * @return A List of Maps as produced by {@link Convert#infoItemMap}.
+     */
+    public static List<Map<String, Object>> searchResults(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter)
+            throws ExtractionException, IOException {
+        SearchInfo info = searchInfo(query, contentFilters, sortFilter);
+        long start = System.nanoTime();
+        List<Map<String, Object>> items = info.getRelatedItems().stream().map(Convert::infoItemMap).toList();
+        Metrics.record(Metrics.CONVERT, start);
+        return items;
+    }
+
+    /**
+     * Runs a search and returns the first page.
+     *
+     * @param query          The search query.
+     * @param contentFilters Optional content filters.
+     * @param sortFilter     Optional sort filter.
+     * @return The SearchInfo of the first result page.
+     */
+    public static SearchInfo searchInfo(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter)
+            throws ExtractionException, IOException {
+        YoutubeService service = getService();
+        long start = System.nanoTime();
+        SearchInfo info = SearchInfo.getInfo(service, service.getSearchQHFactory().fromQuery(query, contentFilters, sortFilter));
+        Metrics.record(Metrics.EXTRACT, start);
+        return info;
     }
 
     public static void getVideoInfo(String videoId) {
-        try {
-            YoutubeService service = getService();
-            var info = StreamInfo.getInfo(service.getStreamExtractor(service.getStreamLHFactory().fromId(videoId)));
+        getVideoInfo(videoId, Fields.ALL);
+    }
 
-            Map<String, Object> resultMap = Convert.streamInfoMap(info);
-            System.out.println(JsonWriter.string(resultMap));
+    public static void getVideoInfo(String videoId, Fields fields) {
+        try {
+            StreamInfo info = extractStream(videoId);
+            new RecordWriter(System.out, outputFormat).write((out, key) -> StreamingConvert.streamInfo(out, key, fields, info));
         } catch (ExtractionException | IOException e) {
             System.err.println(JsonWriter.string(Map.of("error", e.getMessage())));
         }
     }
 
-    public static void search(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter) {
+    public static void resolveVideo(String videoId, Fields fields) {
         try {
-            YoutubeService service = getService();
-            var searchResults = SearchInfo.getInfo(service, service.getSearchQHFactory().fromQuery(query, contentFilters, sortFilter));
+            StreamInfo info = resolveStream(videoId);
+            new RecordWriter(System.out, outputFormat).write((out, key) -> StreamingConvert.streamInfo(out, key, fields, info));
+        } catch (ExtractionException | IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
 
-            List<Map<String, Object>> resultList = searchResults.getRelatedItems().stream().map(Convert::infoItemMap).toList();
+    /**
+     * Writes only the streams chosen by the given selection expressions, see {@link StreamSelector}.
+     */
+    public static void selectStreams(String videoId, List<String> expressions, boolean resolveOnly, Fields fields) {
+        try {
+            List<StreamSelector> selectors = expressions.stream().map(StreamSelector::parse).toList();
+            StreamInfo info = resolveOnly ? resolveStream(videoId) : extractStream(videoId);
+            new RecordWriter(System.out, outputFormat).write((out, key) -> StreamSelector.write(out, key, fields, info, selectors));
+        } catch (ExtractionException | IOException | IllegalArgumentException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
 
-            System.out.println(JsonWriter.string(resultList));
+    /**
+     * Returns the service's search suggestions for what has been typed so far, from the
+     * {@link SuggestionCache} when one is active.
+     *
+     * @param prefix The partial query.
+     * @return The suggested queries, most relevant first.
+     */
+    public static List<String> suggestions(String prefix) throws ExtractionException, IOException {
+        SuggestionCache cache = suggestionCache;
+        return cache != null
+                ? cache.get(prefix, NewPipe::fetchSuggestions)
+                : fetchSuggestions(SuggestionCache.normalize(prefix));
+    }
+
+    private static List<String> fetchSuggestions(String prefix) throws ExtractionException, IOException {
+        YoutubeService service = getService();
+        long start = System.nanoTime();
+        List<String> suggestions = service.getSuggestionExtractor().suggestionList(prefix);
+        Metrics.record(Metrics.EXTRACT, start);
+        return suggestions;
+    }
+
+    /**
+     * Writes the suggestions for a single prefix as one record, or one
+     * {@code {"id": prefix, "result"|"error": ...}} record per prefix when several are given.
+     */
+    public static void suggest(List<String> prefixes) {
+        try {
+            RecordWriter writer = new RecordWriter(System.out, outputFormat, prefixes.size() > 1);
+            if (prefixes.size() == 1) {
+                writer.write(suggestions(prefixes.get(0)));
+                return;
+            }
+            for (String prefix : prefixes) {
+                List<String> suggestions;
+                try {
+                    suggestions = suggestions(prefix);
+                } catch (ExtractionException | IOException e) {
+                    writer.writeError(prefix, e.getMessage());
+                    continue;
+                }
+                writer.writeResult(prefix, (out, key) -> StreamingConvert.value(out, key, suggestions));
+            }
+        } catch (ExtractionException | IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    public static void search(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter) {
+        search(query, contentFilters, sortFilter, Fields.ALL);
+    }
+
+    public static void search(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter, Fields fields) {
+        try {
+            SearchInfo info = searchInfo(query, contentFilters, sortFilter);
+            new RecordWriter(System.out, outputFormat).write((out, key) -> StreamingConvert.infoItems(out, key, fields, info.getRelatedItems()));
         } catch (ExtractionException | IOException e) {
             System.err.println(JsonWriter.string(Map.of("error", e.getMessage())));
         }
     }
+
+    /**
+     * Streams search results across pages, one record per item, prefetching the next
+     * page while the current one is written.
+     */
+    public static void searchPages(String query, @Nullable List<String> contentFilters, @Nullable String sortFilter,
+                                   Fields fields, int maxPages, int limit) {
+        try {
+            YoutubeService service = getService();
+            SearchQueryHandler handler = service.getSearchQHFactory().fromQuery(query, contentFilters, sortFilter);
+            long start = System.nanoTime();
+            SearchInfo first = SearchInfo.getInfo(service, handler);
+            Metrics.record(Metrics.EXTRACT, start);
+
+            RecordWriter writer = new RecordWriter(System.out, outputFormat, true);
+            Pages.forEach(
+                    new InfoItemsPage<>(first.getRelatedItems(), first.getNextPage(), first.getErrors()),
+                    page -> {
+                        long pageStart = System.nanoTime();
+                        InfoItemsPage<InfoItem> items = SearchInfo.getMoreItems(service, handler, page);
+                        Metrics.record(Metrics.EXTRACT, pageStart);
+                        return items;
+                    },
+                    maxPages,
+                    limit,
+                    item -> writer.write((out, key) -> StreamingConvert.infoItem(out, key, fields, item)));
+        } catch (ExtractionException | IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    /**
+     * Crawls a playlist, or a channel tab when no playlist is given, see {@link Crawler}.
+     */
+    public static void crawl(@Nullable String playlistUrl, @Nullable String channelUrl, String tab, Fields fields,
+                             boolean full, int parallelism, int maxPages, int limit, @Nullable Path checkpoint) {
+        try {
+            RecordWriter writer = new RecordWriter(System.out, outputFormat, true);
+            if (playlistUrl != null) {
+                Crawler.playlist(playlistUrl, fields, full, parallelism, maxPages, limit, checkpoint, writer);
+            } else if (channelUrl != null) {
+                Crawler.channel(channelUrl, tab, fields, full, parallelism, maxPages, limit, checkpoint, writer);
+            } else {
+                throw new IllegalArgumentException("Missing playlist or channel URL");
+            }
+        } catch (ExtractionException | IOException | IllegalArgumentException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    /**
+     * Merges the upload feeds of the channels listed in the given files, see {@link Feed}.
+     */
+    public static void feed(List<String> channelFiles, int parallelism, int limit, Fields fields) {
+        try {
+            List<String> channels = new ArrayList<>();
+            for (String file : channelFiles) {
+                channels.addAll(Batch.readIds(Path.of(file)));
+            }
+            Feed.aggregate(channels, parallelism, limit, fields, new RecordWriter(System.out, outputFormat, true));
+        } catch (IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    public static void batch(List<String> videoIds, @Nullable String idsFile, int parallelism, Fields fields) {
+        try {
+            List<String> ids = new ArrayList<>(videoIds);
+            if (idsFile != null) {
+                ids.addAll(Batch.readIds(Path.of(idsFile)));
+            }
+            Batch.streams(ids, parallelism, fields, new RecordWriter(System.out, outputFormat, true));
+        } catch (IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    public static void loadTest(List<String> videoIds, @Nullable String idsFile, List<String> queries,
+                                int requests, int concurrency, long sampleMillis) {
+        try {
+            List<String> ids = new ArrayList<>(videoIds);
+            if (idsFile != null) {
+                ids.addAll(Batch.readIds(Path.of(idsFile)));
+            }
+            RecordWriter writer = new RecordWriter(System.out, outputFormat, true);
+            writer.write(LoadTest.run(ids, queries, requests, concurrency, sampleMillis, writer));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
+
+    public static void serve(@Nullable String socketPath) {
+        serve(socketPath, 0);
+    }
+
+    /**
+     * Serves commands and, when a port is given, exposes {@link Metrics#prometheus()} over HTTP
+     * at {@code /metrics} on the loopback interface.
+     */
+    public static void serve(@Nullable String socketPath, int metricsPort) {
+        try {
+            if (metricsPort > 0) {
+                Metrics.serveHttp(metricsPort);
+            }
+            if (socketPath != null) {
+                Server.serveSocket(socketPath, outputFormat);
+            } else {
+                Server.serve(System.in, System.out, outputFormat);
+            }
+        } catch (IOException e) {
+            System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+        }
+    }
 }
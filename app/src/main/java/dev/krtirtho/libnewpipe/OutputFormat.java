@@ -0,0 +1,39 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * The encodings output records can be written in. All of them carry the same data model, so a
+ * record decodes to the same values whichever format was chosen.
+ */
+public enum OutputFormat {
+    /**
+     * Newline-delimited JSON, one record per line.
+     */
+    JSON,
+    /**
+     * A CBOR sequence, one data item per record.
+     */
+    CBOR,
+    /**
+     * A MessagePack stream, one object per record.
+     */
+    MSGPACK;
+
+    /**
+     * @param name The format name as given on the command line, or null for the default.
+     * @return The matching format.
+     */
+    public static OutputFormat parse(@Nullable String name) {
+        if (name == null) {
+            return JSON;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown output format: " + name + ", expected json, cbor or msgpack");
+        }
+    }
+}
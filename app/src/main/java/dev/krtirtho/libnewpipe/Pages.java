@@ -0,0 +1,137 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.ListExtractor.InfoItemsPage;
+import org.schabi.newpipe.extractor.Page;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Walks paginated extractor results with one page of lookahead: while the items of page i are
+ * being consumed, page i+1 is already being fetched on a virtual thread.
+ */
+public final class Pages {
+
+    /**
+     * Fetches the page following a given page token.
+     */
+    @FunctionalInterface
+    public interface Fetcher<T extends InfoItem> {
+        InfoItemsPage<T> fetch(Page page) throws ExtractionException, IOException;
+    }
+
+    /**
+     * Receives items in order.
+     */
+    @FunctionalInterface
+    public interface ItemConsumer<T extends InfoItem> {
+        void accept(T item) throws IOException;
+    }
+
+    /**
+     * Notified after every item of a page has been passed to the consumer.
+     */
+    @FunctionalInterface
+    public interface PageListener {
+        /**
+         * @param nextPage The token of the page that follows, or null if there is none.
+         * @param consumed The number of items consumed so far.
+         */
+        void pageDone(@Nullable Page nextPage, int consumed) throws IOException;
+    }
+
+    // Prevent instantiation for a utility class
+    private Pages() {
+    }
+
+    /**
+     * Passes the items of the first page and its successors to the consumer until the page or
+     * item limit is reached or no further page exists. A prefetch that turns out not to be needed
+     * is cancelled.
+     *
+     * @param first    The already fetched first page.
+     * @param fetcher  Fetches subsequent pages.
+     * @param maxPages The maximum number of pages to read, including the first.
+     * @param limit    The maximum number of items to pass to the consumer.
+     * @param consumer Receives the items.
+     * @return The number of items consumed.
+     */
+    public static <T extends InfoItem> int forEach(InfoItemsPage<T> first, Fetcher<T> fetcher, int maxPages, int limit,
+                                                   ItemConsumer<T> consumer) throws ExtractionException, IOException {
+        return forEach(first, fetcher, maxPages, limit, consumer, (nextPage, consumed) -> {
+        });
+    }
+
+    /**
+     * Like {@link #forEach(InfoItemsPage, Fetcher, int, int, ItemConsumer)}, and additionally
+     * notifies the listener whenever a page has been consumed completely. A page cut short by the
+     * item limit is not reported, so the last reported token always resumes without gaps.
+     *
+     * @param listener Receives the token following each completely consumed page.
+     */
+    public static <T extends InfoItem> int forEach(InfoItemsPage<T> first, Fetcher<T> fetcher, int maxPages, int limit,
+                                                   ItemConsumer<T> consumer, PageListener listener)
+            throws ExtractionException, IOException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            InfoItemsPage<T> page = first;
+            int pages = 1;
+            int consumed = 0;
+
+            while (true) {
+                Page nextPage = page.getNextPage();
+                Future<InfoItemsPage<T>> next = null;
+                if (pages < maxPages && Page.isValid(nextPage) && consumed + page.getItems().size() < limit) {
+                    next = executor.submit(() -> fetcher.fetch(nextPage));
+                }
+
+                boolean complete = true;
+                for (T item : page.getItems()) {
+                    if (consumed >= limit) {
+                        complete = false;
+                        break;
+                    }
+                    consumer.accept(item);
+                    consumed++;
+                }
+                if (complete) {
+                    listener.pageDone(Page.isValid(nextPage) ? nextPage : null, consumed);
+                }
+
+                if (next == null) {
+                    return consumed;
+                }
+                page = await(next);
+                pages++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T extends InfoItem> InfoItemsPage<T> await(Future<InfoItemsPage<T>> future)
+            throws ExtractionException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching the next page", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExtractionException) {
+                throw (ExtractionException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
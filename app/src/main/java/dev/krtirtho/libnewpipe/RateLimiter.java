@@ -0,0 +1,183 @@
+package dev.krtirtho.libnewpipe;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules upstream requests with one token bucket per host whose rate adapts AIMD-style:
+ * every successful response raises the permitted rate a little, every throttling response
+ * (429 or 5xx) halves it and may pause the host for the duration the server asked for.
+ * <p>
+ * It also holds the global retry budget: each successful request deposits a fraction of a retry,
+ * each retry withdraws a whole one, which caps retries to a share of the overall traffic and
+ * prevents retry storms when upstream is struggling.
+ */
+public class RateLimiter {
+
+    public static final double DEFAULT_INITIAL_RATE = 20;
+    public static final double DEFAULT_MAX_RATE = 100;
+
+    private static final double MIN_RATE = 0.5;
+    private static final double ADDITIVE_INCREASE = 0.1;
+    private static final double MULTIPLICATIVE_DECREASE = 0.5;
+    // Concurrent throttling responses from one burst only count as a single congestion signal
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double RETRY_DEPOSIT = 0.1;
+    private static final double MAX_RETRY_BUDGET = 20;
+
+    private final double initialRate;
+    private final double maxRate;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final Object budgetLock = new Object();
+    private double retryBudget = MAX_RETRY_BUDGET;
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong retriesDenied = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * @param initialRate The requests per second initially permitted for each host; also the burst size.
+     * @param maxRate     The upper bound the rate of a host can grow to.
+     */
+    public RateLimiter(double initialRate, double maxRate) {
+        this.initialRate = initialRate;
+        this.maxRate = Math.max(initialRate, maxRate);
+    }
+
+    private final class Bucket {
+        double rate = initialRate;
+        double tokens = initialRate;
+        // nanoTime values may be negative, so they are only ever compared by subtraction
+        long lastRefill = System.nanoTime();
+        long lastDecrease = lastRefill - DECREASE_INTERVAL_NANOS;
+        long pausedUntil = lastRefill;
+        int waiting;
+
+        // Takes a token, going into debt if none is available, and returns how long to wait for it
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(initialRate, tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+            tokens -= 1;
+
+            long wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            return Math.max(wait, pausedUntil - now);
+        }
+    }
+
+    /**
+     * Blocks until the host may be sent another request.
+     *
+     * @param host The host the request goes to.
+     */
+    public void acquire(String host) throws InterruptedIOException {
+        Bucket bucket = buckets.computeIfAbsent(host, h -> new Bucket());
+        long wait = bucket.reserve();
+        if (wait <= 0) {
+            return;
+        }
+
+        synchronized (bucket) {
+            bucket.waiting++;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rate limit");
+        } finally {
+            synchronized (bucket) {
+                bucket.waiting--;
+            }
+        }
+    }
+
+    /**
+     * Records a successful response: additive increase of the host rate and a retry budget deposit.
+     */
+    public void onSuccess(String host) {
+        Bucket bucket = buckets.get(host);
+        if (bucket != null) {
+            synchronized (bucket) {
+                bucket.rate = Math.min(maxRate, bucket.rate + ADDITIVE_INCREASE);
+            }
+        }
+        synchronized (budgetLock) {
+            retryBudget = Math.min(MAX_RETRY_BUDGET, retryBudget + RETRY_DEPOSIT);
+        }
+    }
+
+    /**
+     * Records a throttling response: multiplicative decrease of the host rate and, if the server
+     * sent Retry-After, a pause of the whole host.
+     *
+     * @param host            The host that throttled.
+     * @param retryAfterMillis The delay the server asked for, or 0.
+     */
+    public void onThrottled(String host, long retryAfterMillis) {
+        throttled.incrementAndGet();
+        Bucket bucket = buckets.computeIfAbsent(host, h -> new Bucket());
+        synchronized (bucket) {
+            long now = System.nanoTime();
+            if (now - bucket.lastDecrease >= DECREASE_INTERVAL_NANOS) {
+                bucket.rate = Math.max(MIN_RATE, bucket.rate * MULTIPLICATIVE_DECREASE);
+                bucket.lastDecrease = now;
+            }
+            if (retryAfterMillis > 0) {
+                long until = now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+                if (until - bucket.pausedUntil > 0) {
+                    bucket.pausedUntil = until;
+                }
+            }
+        }
+    }
+
+    /**
+     * Withdraws one retry from the global budget.
+     *
+     * @return Whether a retry may be attempted.
+     */
+    public boolean tryRetry() {
+        synchronized (budgetLock) {
+            if (retryBudget >= 1) {
+                retryBudget -= 1;
+                retries.incrementAndGet();
+                return true;
+            }
+        }
+        retriesDenied.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return The permitted rate and queue depth per host plus global retry counters.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> hosts = new HashMap<>();
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            Map<String, Object> host = new HashMap<>();
+            synchronized (bucket) {
+                host.put("rate", bucket.rate);
+                host.put("queued", bucket.waiting);
+                host.put("paused", bucket.pausedUntil - System.nanoTime() > 0);
+            }
+            hosts.put(entry.getKey(), host);
+        }
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("hosts", hosts);
+        map.put("throttled", throttled.get());
+        map.put("retries", retries.get());
+        map.put("retriesDenied", retriesDenied.get());
+        synchronized (budgetLock) {
+            map.put("retryBudget", retryBudget);
+        }
+        return map;
+    }
+}
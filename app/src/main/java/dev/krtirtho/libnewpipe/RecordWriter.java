@@ -0,0 +1,138 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonAppendableWriter;
+import com.grack.nanojson.JsonWriter;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes a stream of output records in one {@link OutputFormat}. JSON records are terminated by
+ * a newline; CBOR and MessagePack records are self-delimiting and written back to back. It is
+ * safe to share between concurrently running tasks.
+ * <p>
+ * By default every value is serialized straight into a buffered stream and flushed once
+ * complete, which suits commands that print a single document: nothing is held in memory
+ * beyond the stream buffer, but an emitter failing halfway leaves a partial document behind.
+ * Writers of many records, such as batch, paging or serve output, use atomic records instead:
+ * each record is serialized into its own buffer without holding the lock, and only the copy to
+ * the output is serialized, so a failing emitter never corrupts the stream.
+ */
+public final class RecordWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RECORD_BUFFER_SIZE = 4 * 1024;
+
+    private final OutputStream out;
+    private final OutputFormat format;
+    private final boolean atomic;
+
+    public RecordWriter(OutputStream out) {
+        this(out, OutputFormat.JSON);
+    }
+
+    public RecordWriter(OutputStream out, OutputFormat format) {
+        this(out, format, false);
+    }
+
+    /**
+     * @param out    The output stream.
+     * @param format The record encoding.
+     * @param atomic Whether every record is buffered and written only once complete.
+     */
+    public RecordWriter(OutputStream out, OutputFormat format, boolean atomic) {
+        this.out = atomic ? out : new BufferedOutputStream(out, BUFFER_SIZE);
+        this.format = format;
+        this.atomic = atomic;
+    }
+
+    /**
+     * Serializes a value and writes it as a single record.
+     *
+     * @param value A Map, List or primitive accepted by {@link JsonWriter}.
+     */
+    public void write(@Nullable Object value) throws IOException {
+        write((sink, key) -> StreamingConvert.value(sink, key, value));
+    }
+
+    /**
+     * Lets the emitter write a single record. With atomic records nothing is written if the
+     * emitter throws.
+     *
+     * @param emitter Writes exactly one top-level value.
+     */
+    public void write(StreamingConvert.Emitter emitter) throws IOException {
+        long start = System.nanoTime();
+        if (atomic) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_BUFFER_SIZE);
+            serialize(record, emitter);
+            synchronized (out) {
+                record.writeTo(out);
+                out.flush();
+            }
+        } else {
+            synchronized (out) {
+                serialize(out, emitter);
+                out.flush();
+            }
+        }
+        Metrics.record(Metrics.SERIALIZE, start);
+    }
+
+    private void serialize(OutputStream target, StreamingConvert.Emitter emitter) throws IOException {
+        switch (format) {
+            case JSON -> {
+                JsonAppendableWriter writer = JsonWriter.on(target);
+                emitter.write(writer, null);
+                writer.done();
+                target.write('\n');
+            }
+            case CBOR -> writeBinary(new CborSink(target), emitter);
+            case MSGPACK -> writeBinary(new MsgpackSink(target), emitter);
+        }
+    }
+
+    private static void writeBinary(BinarySink sink, StreamingConvert.Emitter emitter) throws IOException {
+        try {
+            emitter.write(sink, null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sink.done();
+    }
+
+    /**
+     * Writes a {@code {"id": ..., "result": ...}} record.
+     *
+     * @param id     The id of the request being answered.
+     * @param result Writes the result value.
+     */
+    public void writeResult(@Nullable Object id, StreamingConvert.Emitter result) throws IOException {
+        write((sink, key) -> {
+            StreamingConvert.openObject(sink, key);
+            sink.value("id", id);
+            result.write(sink, "result");
+            sink.end();
+        });
+    }
+
+    /**
+     * Writes a {@code {"id": ..., "error": ...}} record.
+     *
+     * @param id      The id of the request that failed.
+     * @param message The error message.
+     */
+    public void writeError(@Nullable Object id, @Nullable String message) throws IOException {
+        write((sink, key) -> {
+            StreamingConvert.openObject(sink, key);
+            sink.value("id", id);
+            sink.value("error", message);
+            sink.end();
+        });
+    }
+}
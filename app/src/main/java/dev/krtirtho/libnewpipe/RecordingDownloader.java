@@ -0,0 +1,36 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+import org.schabi.newpipe.extractor.exceptions.ReCaptchaException;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * A {@link Downloader} that additionally writes every exchange to a {@link ResponseArchive},
+ * so the same run can later be served offline by {@link ReplayDownloader}.
+ */
+public class RecordingDownloader extends Downloader {
+
+    private final ResponseArchive archive;
+
+    /**
+     * @param client  The HTTP client used for network requests.
+     * @param cache   An optional on-disk cache consulted before going to the network.
+     * @param archive The archive every response is recorded to.
+     */
+    public RecordingDownloader(OkHttpClient client, @Nullable ResponseCache cache, ResponseArchive archive) {
+        super(client, cache);
+        this.archive = archive;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException, ReCaptchaException {
+        Response response = super.execute(request);
+        archive.record(request, response);
+        return response;
+    }
+}
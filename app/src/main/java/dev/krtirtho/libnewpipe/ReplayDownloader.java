@@ -0,0 +1,88 @@
+package dev.krtirtho.libnewpipe;
+
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Downloader} that never touches the network and answers from a {@link ResponseArchive}
+ * instead, after an artificial delay that stands in for network latency.
+ * <p>
+ * Responses found only through {@link ResponseArchive#replaySimilar(Request)} are counted as
+ * fallbacks, separately from exact replays.
+ */
+public class ReplayDownloader extends Downloader {
+
+    private final ResponseArchive archive;
+    private final long latencyMillis;
+    private final long jitterMillis;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+
+    /**
+     * @param archive       The archive responses are served from.
+     * @param latencyMillis The delay added to every response.
+     * @param jitterMillis  The upper bound of a uniformly random delay added on top.
+     */
+    public ReplayDownloader(ResponseArchive archive, long latencyMillis, long jitterMillis) {
+        // No OkHttp client, pool or dispatcher, they would only skew memory and startup figures
+        super((ResponseCache) null);
+        this.archive = archive;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        long start = System.nanoTime();
+        delay();
+
+        Response response = archive.replay(request);
+        if (response != null) {
+            replayed.incrementAndGet();
+        } else {
+            response = archive.replaySimilar(request);
+            if (response == null) {
+                missing.incrementAndGet();
+                throw new IOException("No recorded response for " + request.httpMethod() + ' ' + request.url());
+            }
+            fallbacks.incrementAndGet();
+        }
+        Metrics.recordStatus(response.responseCode());
+        Metrics.record(Metrics.HTTP, start);
+        return response;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> replay = new HashMap<>();
+        replay.put("replayed", replayed.get());
+        replay.put("fallbacks", fallbacks.get());
+        replay.put("missing", missing.get());
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("replay", replay);
+        return map;
+    }
+
+    private void delay() throws InterruptedIOException {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during replay delay");
+        }
+    }
+}
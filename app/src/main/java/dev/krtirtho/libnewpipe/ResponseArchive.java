@@ -0,0 +1,177 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A directory of recorded HTTP exchanges, written by {@link RecordingDownloader} and served by
+ * {@link ReplayDownloader}.
+ * <p>
+ * Every response is stored under the same key as in {@link ResponseCache}, and an index lists
+ * the keys in recording order together with a second key that ignores the random parameters
+ * the extractor adds to some requests: the {@code t} query parameter and the {@code cpn}
+ * playback nonce, in the query or in a JSON body. When there is no exact match, replay falls
+ * back to the responses recorded for requests that differ only in those parameters, handed out
+ * round-robin.
+ */
+public class ResponseArchive {
+
+    private static final int MAGIC = 0x4e504131; // "NPA1"
+    private static final String SUFFIX = ".response";
+    private static final String INDEX = "index.tsv";
+    private static final Set<String> RANDOM_PARAMETERS = Set.of("t", "cpn");
+    private static final Pattern RANDOM_BODY_FIELD = Pattern.compile("\"(cpn)\"\\s*:\\s*\"[^\"]*\"");
+
+    private final Path directory;
+    private final Map<String, List<String>> keysBySimilar = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory The archive directory. It is created if missing; an existing index is loaded.
+     */
+    public ResponseArchive(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        Path index = directory.resolve(INDEX);
+        if (Files.exists(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2) {
+                    keysBySimilar.computeIfAbsent(parts[1], p -> new CopyOnWriteArrayList<>()).add(parts[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a response and appends it to the index.
+     *
+     * @param request  The executed request.
+     * @param response The response received for it.
+     */
+    public void record(Request request, Response response) throws IOException {
+        String key = ResponseCache.key(request);
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            ResponseCache.writeResponse(out, response);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        String similar = similarKey(request);
+        synchronized (this) {
+            try (BufferedWriter index = Files.newBufferedWriter(directory.resolve(INDEX), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                index.write(key + '\t' + similar);
+                index.newLine();
+            }
+            keysBySimilar.computeIfAbsent(similar, k -> new CopyOnWriteArrayList<>()).add(key);
+        }
+    }
+
+    /**
+     * Looks up the response recorded for exactly this request.
+     *
+     * @param request The request to answer.
+     * @return The recorded response, or null.
+     */
+    @Nullable
+    public Response replay(Request request) throws IOException {
+        return read(ResponseCache.key(request));
+    }
+
+    /**
+     * Looks up a response recorded for a request that differs from this one only in its random
+     * parameters. Use it after {@link #replay(Request)} found no exact match.
+     *
+     * @param request The request to answer.
+     * @return One of the similar recorded responses, or null.
+     */
+    @Nullable
+    public Response replaySimilar(Request request) throws IOException {
+        String similar = similarKey(request);
+        List<String> keys = keysBySimilar.get(similar);
+        if (keys == null || keys.isEmpty()) {
+            return null;
+        }
+        int next = cursors.computeIfAbsent(similar, k -> new AtomicInteger()).getAndIncrement();
+        return read(keys.get(Math.floorMod(next, keys.size())));
+    }
+
+    @Nullable
+    private Response read(String key) throws IOException {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an archived response: " + file);
+            }
+            return ResponseCache.readResponse(in);
+        }
+    }
+
+    /**
+     * Builds the key shared by requests that differ only in their random parameters: the method,
+     * the URL without them, and a digest of the body with their values blanked.
+     */
+    static String similarKey(Request request) {
+        StringBuilder key = new StringBuilder(request.httpMethod()).append(' ').append(stripRandomParameters(request.url()));
+        if (request.dataToSend() != null) {
+            String body = new String(request.dataToSend(), StandardCharsets.UTF_8);
+            body = RANDOM_BODY_FIELD.matcher(body).replaceAll("\"$1\":\"\"");
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+                key.append(' ').append(HexFormat.of().formatHex(digest));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return key.toString();
+    }
+
+    private static String stripRandomParameters(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        int fragment = url.indexOf('#', query);
+        String parameters = fragment < 0 ? url.substring(query + 1) : url.substring(query + 1, fragment);
+
+        StringJoiner kept = new StringJoiner("&");
+        for (String parameter : parameters.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (!parameter.isEmpty() && !RANDOM_PARAMETERS.contains(name)) {
+                kept.add(parameter);
+            }
+        }
+        String base = url.substring(0, query);
+        return kept.length() == 0 ? base : base + '?' + kept;
+    }
+}
@@ -0,0 +1,350 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, size-bounded cache of HTTP responses stored as one file per entry.
+ * <p>
+ * Entries are keyed on method, URL and a hash of the request body. How long an entry stays
+ * fresh is decided by TTL rules matched against {@code host} or {@code host/path-prefix};
+ * the longest matching rule wins and {@code *} is the fallback. Entries are written to a
+ * temporary file and atomically moved into place, and eviction holds a file lock, so several
+ * processes can share one directory. The modification time of an entry doubles as its last
+ * access time, which gives least-recently-used eviction.
+ */
+public class ResponseCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4e504331; // "NPC1"
+    private static final String SUFFIX = ".entry";
+    private static final String DEFAULT_RULE = "*";
+
+    private final Path directory;
+    private final long maxSize;
+    private final Map<String, Long> ttlRules;
+    private final AtomicLong approximateSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory The cache directory. It is created if missing.
+     * @param maxSize   The size in bytes above which least recently used entries are evicted.
+     * @param ttlRules  TTLs in seconds keyed by {@code host}, {@code host/path-prefix} or {@code *}.
+     */
+    public ResponseCache(Path directory, long maxSize, Map<String, Long> ttlRules) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        this.ttlRules = new LinkedHashMap<>(defaultTtlRules());
+        this.ttlRules.putAll(ttlRules);
+        this.approximateSize = new AtomicLong(totalSize(listEntries()));
+    }
+
+    /**
+     * The rules used unless overridden: player scripts change rarely, everything else is
+     * kept for a few minutes.
+     */
+    public static Map<String, Long> defaultTtlRules() {
+        Map<String, Long> rules = new LinkedHashMap<>();
+        rules.put(DEFAULT_RULE, 300L);
+        rules.put("www.youtube.com/s/player/", 86400L);
+        return rules;
+    }
+
+    /**
+     * Parses TTL rules given as {@code host[/path]=seconds}.
+     *
+     * @param values The raw rules, e.g. {@code www.youtube.com=600} or {@code *=0}.
+     * @return The rules keyed by host or host and path prefix.
+     */
+    public static Map<String, Long> parseTtlRules(List<String> values) {
+        Map<String, Long> rules = new LinkedHashMap<>();
+        for (String value : values) {
+            int separator = value.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cache TTL rule: " + value);
+            }
+            rules.put(value.substring(0, separator).trim(), Long.parseLong(value.substring(separator + 1).trim()));
+        }
+        return rules;
+    }
+
+    /**
+     * Looks up a fresh cached response for the request.
+     *
+     * @param request The request about to be executed.
+     * @return The cached response, or null on a miss.
+     */
+    @Nullable
+    public Response get(Request request) {
+        Path file = entryFile(request);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() < System.currentTimeMillis()) {
+                misses.incrementAndGet();
+                return null;
+            }
+            Response response = readResponse(in);
+            touch(file);
+            hits.incrementAndGet();
+            return response;
+        } catch (IOException e) {
+            // Missing, concurrently replaced or truncated entries are all plain misses
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a successful response if a TTL rule allows caching it.
+     *
+     * @param request  The executed request.
+     * @param response The response received for it.
+     */
+    public void put(Request request, Response response) {
+        long ttl = ttlFor(request.url());
+        if (ttl <= 0 || response.responseCode() < 200 || response.responseCode() >= 300) {
+            return;
+        }
+
+        Path file = entryFile(request);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(System.currentTimeMillis() + ttl * 1000);
+                writeResponse(out, response);
+            }
+            long size = Files.size(temp);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            stores.incrementAndGet();
+
+            if (approximateSize.addAndGet(size) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            // Caching is best effort, a failed write only costs a future miss
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * @return Hit, miss, store and eviction counters plus the approximate size on disk.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("hits", hits.get());
+        map.put("misses", misses.get());
+        map.put("stores", stores.get());
+        map.put("evictions", evictions.get());
+        map.put("sizeBytes", approximateSize.get());
+        map.put("maxSizeBytes", maxSize);
+        return map;
+    }
+
+    long ttlFor(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+        String target = uri.getHost() + (uri.getRawPath() != null ? uri.getRawPath() : "");
+
+        String bestRule = DEFAULT_RULE;
+        for (String rule : ttlRules.keySet()) {
+            if (!rule.equals(DEFAULT_RULE) && target.startsWith(rule) && rule.length() > bestRule.length()) {
+                bestRule = rule;
+            }
+        }
+        return ttlRules.getOrDefault(bestRule, 0L);
+    }
+
+    private Path entryFile(Request request) {
+        return directory.resolve(key(request) + SUFFIX);
+    }
+
+    /**
+     * Hashes method, URL and request body into a stable file-name-safe key.
+     */
+    static String key(Request request) {
+        MessageDigest digest = sha256();
+        digest.update(request.httpMethod().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(request.url().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        if (request.dataToSend() != null) {
+            digest.update(sha256().digest(request.dataToSend()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeInt(response.responseCode());
+        out.writeUTF(response.responseMessage() != null ? response.responseMessage() : "");
+        out.writeUTF(response.latestUrl() != null ? response.latestUrl() : "");
+
+        Map<String, List<String>> headers = response.responseHeaders();
+        out.writeInt(headers.size());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            out.writeUTF(header.getKey() != null ? header.getKey() : "");
+            out.writeInt(header.getValue().size());
+            for (String value : header.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+
+        if (response.responseBody() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] body = response.responseBody().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+    }
+
+    static Response readResponse(DataInputStream in) throws IOException {
+        int code = in.readInt();
+        String message = in.readUTF();
+        String latestUrl = in.readUTF();
+
+        int headerCount = in.readInt();
+        Map<String, List<String>> headers = new HashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            String name = in.readUTF();
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<>(valueCount);
+            for (int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+            headers.put(name, values);
+        }
+
+        String body = null;
+        int bodyLength = in.readInt();
+        if (bodyLength >= 0) {
+            body = new String(in.readNBytes(bodyLength), StandardCharsets.UTF_8);
+        }
+        return new Response(code, message, headers, body, latestUrl);
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // The entry was evicted or replaced meanwhile
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until the cache is below 90% of its maximum size.
+     * The lock file serializes eviction across all processes sharing the directory.
+     */
+    private synchronized void evict() throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(directory.resolve(".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+            List<Path> entries = listEntries();
+            Map<Path, FileTime> accessTimes = new HashMap<>();
+            for (Path entry : entries) {
+                accessTimes.put(entry, lastModified(entry));
+            }
+            entries.sort(Comparator.comparing(accessTimes::get));
+
+            long size = totalSize(entries);
+            long target = maxSize / 10 * 9;
+            for (Path entry : entries) {
+                if (size <= target) {
+                    break;
+                }
+                long entrySize = sizeOf(entry);
+                if (Files.deleteIfExists(entry)) {
+                    size -= entrySize;
+                    evictions.incrementAndGet();
+                }
+            }
+            approximateSize.set(size);
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList());
+        }
+    }
+
+    private static long totalSize(List<Path> entries) {
+        long total = 0;
+        for (Path entry : entries) {
+            total += sizeOf(entry);
+        }
+        return total;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            // Removed by another process meanwhile
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(@Nullable Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Leftover temporary files are harmless
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.krtirtho.libnewpipe;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a response body exceeds the maximum size of the {@link Downloader}.
+ * <p>
+ * The same URL returns the same oversized body when asked again, so unlike other I/O errors
+ * this one is never retried.
+ */
+public final class ResponseTooLargeException extends IOException {
+
+    /**
+     * @param message Describes the size, the limit and the URL.
+     */
+    public ResponseTooLargeException(String message) {
+        super(message);
+    }
+}
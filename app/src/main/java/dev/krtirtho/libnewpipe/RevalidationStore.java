@@ -0,0 +1,148 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.downloader.Request;
+import org.schabi.newpipe.extractor.downloader.Response;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last response of GET requests whose server sent an ETag or Last-Modified
+ * validator, one file per URL, so the next request for the same URL can be sent as a
+ * conditional request. A {@code 304 Not Modified} answer then costs no body transfer and the
+ * stored response is served instead.
+ * <p>
+ * Unlike {@link ResponseCache}, entries never expire: they are always revalidated with the server,
+ * and a newer response simply replaces them.
+ */
+public class RevalidationStore {
+
+    private static final int MAGIC = 0x4e505631; // "NPV1"
+    private static final String SUFFIX = ".validated";
+
+    private final Path directory;
+
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+    private final AtomicLong unconditional = new AtomicLong();
+
+    /**
+     * @param directory The state directory. It is created if missing.
+     */
+    public RevalidationStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * @param request The request about to be executed.
+     * @return The stored response for the request, or null if there is none.
+     */
+    @Nullable
+    public Response get(Request request) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryFile(request))))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            return ResponseCache.readResponse(in);
+        } catch (IOException e) {
+            // Missing or truncated entries just mean an unconditional request
+            return null;
+        }
+    }
+
+    /**
+     * Builds the request headers that make a request conditional on the stored response.
+     *
+     * @param request The original request.
+     * @param stored  The response previously stored for it.
+     * @return The request headers plus If-None-Match and If-Modified-Since where available.
+     */
+    public static Map<String, List<String>> conditionalHeaders(Request request, Response stored) {
+        Map<String, List<String>> headers = new HashMap<>(request.headers());
+        String etag = header(stored, "ETag");
+        if (etag != null) {
+            headers.put("If-None-Match", List.of(etag));
+        }
+        String lastModified = header(stored, "Last-Modified");
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", List.of(lastModified));
+        }
+        return headers;
+    }
+
+    /**
+     * Records the outcome of a request and stores its response if it carries a validator.
+     *
+     * @param request     The original request.
+     * @param response    The response received for it.
+     * @param conditional Whether the request was sent with validators.
+     */
+    public void update(Request request, Response response, boolean conditional) {
+        if (response.responseCode() == 304) {
+            notModified.incrementAndGet();
+            return;
+        }
+        (conditional ? modified : unconditional).incrementAndGet();
+        if (response.responseCode() != 200
+                || (header(response, "ETag") == null && header(response, "Last-Modified") == null)) {
+            return;
+        }
+
+        Path file = entryFile(request);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                ResponseCache.writeResponse(out, response);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Best effort, the next request is then sent unconditionally
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // Leftover temporary files are harmless
+            }
+        }
+    }
+
+    /**
+     * @return How many conditional requests were answered with 304 or a new body, and how many
+     * requests had nothing to revalidate.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("notModified", notModified.get());
+        map.put("modified", modified.get());
+        map.put("unconditional", unconditional.get());
+        return map;
+    }
+
+    private Path entryFile(Request request) {
+        return directory.resolve(ResponseCache.key(request) + SUFFIX);
+    }
+
+    @Nullable
+    private static String header(Response response, String name) {
+        for (Map.Entry<String, List<String>> header : response.responseHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,270 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonArray;
+import com.grack.nanojson.JsonObject;
+import com.grack.nanojson.JsonParser;
+import com.grack.nanojson.JsonParserException;
+import com.grack.nanojson.JsonWriter;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.search.SearchInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running mode that keeps one initialized service and {@link Downloader} alive and
+ * answers newline-delimited JSON commands.
+ * <p>
+ * Every request line is an object such as
+ * {@code {"id": 1, "command": "streams", "videoId": "dQw4w9WgXcQ"}} or
+ * {@code {"id": 2, "command": "search", "query": "lofi", "contentFilters": ["videos"]}}
+ * or {@code {"id": 3, "command": "stats"}}. The {@code resolve} command takes a
+ * {@code videoId} like {@code streams} but only extracts playable streams and basic metadata,
+ * see {@link NewPipe#resolveStream(String)}. The {@code select} command takes a {@code videoId},
+ * an array of {@link StreamSelector} expressions in {@code select} and an optional
+ * {@code resolveOnly} flag, and answers with the chosen streams only. The {@code metrics} command answers with the
+ * Prometheus text exposition of {@link Metrics} as a string. The {@code suggest} command takes a
+ * {@code query} prefix and answers with the search suggestions for it; with a {@code session}
+ * string, a newer {@code suggest} of the same session cancels the one still in flight, which is
+ * answered with an error. The optional {@code fields} array limits the result to the given paths,
+ * see {@link Fields}.
+ * Every response is a single record tagged with the same id, holding either a {@code result}
+ * or an {@code error}. Commands run concurrently, so responses may arrive out of order.
+ * Responses are JSON lines unless another {@link OutputFormat} is chosen, in which case they
+ * are CBOR data items or MessagePack objects written back to back; requests are always JSON.
+ */
+public final class Server {
+
+    // The thread running the latest suggest command of each session
+    private static final Map<String, Thread> SUGGEST_SESSIONS = new HashMap<>();
+
+    // Prevent instantiation for a utility class
+    private Server() {
+    }
+
+    /**
+     * Listens on a Unix domain socket and serves every accepted connection independently.
+     *
+     * @param socketPath The filesystem path of the socket. An existing file is replaced.
+     * @param format     The encoding of the responses.
+     */
+    public static void serveSocket(String socketPath, OutputFormat format) throws IOException {
+        Path path = Path.of(socketPath);
+        Files.deleteIfExists(path);
+        NewPipe.getService();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            while (true) {
+                SocketChannel channel = server.accept();
+                Thread.ofVirtual().start(() -> {
+                    try (channel) {
+                        serve(Channels.newInputStream(channel), Channels.newOutputStream(channel), format);
+                    } catch (IOException e) {
+                        System.err.println(JsonWriter.string(Map.of("error", String.valueOf(e.getMessage()))));
+                    }
+                });
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Reads commands from the input until it is closed and writes one response record per command.
+     * Returns once every in-flight command has been answered.
+     *
+     * @param in     The stream of newline-delimited JSON commands.
+     * @param out    The stream responses are written to.
+     * @param format The encoding of the responses.
+     */
+    public static void serve(InputStream in, OutputStream out, OutputFormat format) throws IOException {
+        NewPipe.getService();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        RecordWriter writer = new RecordWriter(out, format, true);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String command = line;
+                executor.submit(() -> {
+                    handle(command, writer);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Parses and runs a single command line, then writes its response.
+     *
+     * @param line   The raw JSON command.
+     * @param writer Receives the response record containing the request id and a result or an error.
+     */
+    static void handle(String line, RecordWriter writer) throws IOException {
+        Object id = null;
+        StreamingConvert.Emitter result;
+        try {
+            JsonObject request = JsonParser.object().from(line);
+            id = request.get("id");
+            result = dispatch(request);
+        } catch (JsonParserException e) {
+            writer.writeError(id, "Invalid request: " + e.getMessage());
+            return;
+        } catch (ExtractionException | IOException | IllegalArgumentException e) {
+            writer.writeError(id, e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            writer.writeError(id, e.toString());
+            return;
+        }
+        writer.writeResult(id, result);
+    }
+
+    private static StreamingConvert.Emitter dispatch(JsonObject request) throws ExtractionException, IOException {
+        String command = request.getString("command");
+        if (command == null) {
+            throw new IllegalArgumentException("Missing command");
+        }
+
+        Fields fields = Fields.parse(stringList(request.getArray("fields")));
+
+        switch (command) {
+            case "streams": {
+                StreamInfo info = NewPipe.extractStream(require(request, "videoId"));
+                return (out, key) -> StreamingConvert.streamInfo(out, key, fields, info);
+            }
+            case "resolve": {
+                StreamInfo info = NewPipe.resolveStream(require(request, "videoId"));
+                Fields resolveFields = request.getArray("fields") != null ? fields : NewPipe.RESOLVE_FIELDS;
+                return (out, key) -> StreamingConvert.streamInfo(out, key, resolveFields, info);
+            }
+            case "select": {
+                List<StreamSelector> selectors = stringList(request.getArray("select")).stream()
+                        .map(StreamSelector::parse).toList();
+                if (selectors.isEmpty()) {
+                    throw new IllegalArgumentException("Missing select");
+                }
+                String videoId = require(request, "videoId");
+                StreamInfo info = request.getBoolean("resolveOnly")
+                        ? NewPipe.resolveStream(videoId)
+                        : NewPipe.extractStream(videoId);
+                Fields streamFields = request.getArray("fields") != null ? fields : StreamSelector.DEFAULT_FIELDS;
+                return (out, key) -> StreamSelector.write(out, key, streamFields, info, selectors);
+            }
+            case "metrics": {
+                String metrics = Metrics.prometheus();
+                return (out, key) -> StreamingConvert.value(out, key, metrics);
+            }
+            case "suggest": {
+                List<String> suggestions = suggest(require(request, "query"), request.getString("session"));
+                return (out, key) -> StreamingConvert.value(out, key, suggestions);
+            }
+            case "stats": {
+                Map<String, Object> stats = NewPipe.stats();
+                return (out, key) -> StreamingConvert.value(out, key, stats);
+            }
+            case "search": {
+                SearchInfo info = NewPipe.searchInfo(
+                        require(request, "query"),
+                        stringList(request.getArray("contentFilters")),
+                        request.getString("sortFilter"));
+                return (out, key) -> StreamingConvert.infoItems(out, key, fields, info.getRelatedItems());
+            }
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Fetches suggestions while registered as the latest query of the session. Registering
+     * interrupts the previous query of the session, which cancels its HTTP call.
+     */
+    private static List<String> suggest(String query, @Nullable String session) throws ExtractionException, IOException {
+        if (session == null) {
+            return NewPipe.suggestions(query);
+        }
+
+        Thread thread = Thread.currentThread();
+        synchronized (SUGGEST_SESSIONS) {
+            Thread previous = SUGGEST_SESSIONS.put(session, thread);
+            if (previous != null) {
+                previous.interrupt();
+            }
+        }
+
+        List<String> suggestions;
+        try {
+            suggestions = NewPipe.suggestions(query);
+        } catch (ExtractionException | IOException | RuntimeException e) {
+            if (!release(session, thread)) {
+                throw superseded(session);
+            }
+            throw e;
+        }
+        if (!release(session, thread)) {
+            throw superseded(session);
+        }
+        return suggestions;
+    }
+
+    /**
+     * Unregisters the thread and clears an interrupt that may have raced with completion, so the
+     * response can still be written to an interruptible socket channel.
+     *
+     * @return Whether the thread was still the latest query of the session.
+     */
+    private static boolean release(String session, Thread thread) {
+        synchronized (SUGGEST_SESSIONS) {
+            Thread.interrupted();
+            return SUGGEST_SESSIONS.remove(session, thread);
+        }
+    }
+
+    private static InterruptedIOException superseded(String session) {
+        return new InterruptedIOException("Superseded by a newer query of session " + session);
+    }
+
+    private static String require(JsonObject request, String key) {
+        String value = request.getString(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + key);
+        }
+        return value;
+    }
+
+    private static List<String> stringList(JsonArray array) {
+        List<String> list = new ArrayList<>();
+        if (array != null) {
+            for (Object value : array) {
+                list.add(String.valueOf(value));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,291 @@
+package dev.krtirtho.libnewpipe;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches extracted {@link StreamInfo} objects by video ID.
+ * <p>
+ * An entry lives until shortly before the earliest {@code expire} timestamp found in its signed
+ * stream URLs, so a cached URL is never handed out after YouTube stops accepting it. Results
+ * without such a timestamp are not kept. Concurrent requests for the same ID share a single
+ * extraction. Entries are optionally mirrored to a directory so one-shot processes can reuse them.
+ */
+public final class StreamInfoCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * Entries are dropped this long before their URLs expire, leaving clients time to start playback.
+     */
+    private static final long EXPIRY_MARGIN_MS = 5 * 60 * 1000;
+
+    // Matches both the query form (?expire=123) and the path form used by manifests (/expire/123/)
+    private static final Pattern EXPIRE = Pattern.compile("[?&/]expire[=/](\\d+)");
+
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "java.**;org.schabi.newpipe.extractor.**;!*");
+
+    /**
+     * Extracts a video when the cache cannot answer.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        StreamInfo load(String videoId) throws ExtractionException, IOException;
+    }
+
+    private static final class Entry {
+        final CompletableFuture<StreamInfo> future = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    @Nullable
+    private final Path directory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param maxEntries The number of videos kept in memory.
+     * @param directory  An optional directory entries are also persisted to.
+     */
+    public StreamInfoCache(int maxEntries, @Nullable Path directory) throws IOException {
+        this.maxEntries = maxEntries;
+        this.directory = directory != null ? Files.createDirectories(directory) : null;
+    }
+
+    /**
+     * Returns the cached result for a video, or extracts it with the loader. While an extraction
+     * is running, other callers asking for the same ID wait for it instead of starting their own.
+     *
+     * @param videoId The video ID.
+     * @param loader  Performs the extraction on a miss.
+     * @return The extracted stream information.
+     */
+    public StreamInfo get(String videoId, Loader loader) throws ExtractionException, IOException {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(videoId);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(videoId, entry);
+            entry = null;
+        }
+
+        if (entry != null) {
+            (entry.future.isDone() ? hits : coalesced).incrementAndGet();
+            return await(entry);
+        }
+
+        Entry created = new Entry();
+        Entry existing = entries.putIfAbsent(videoId, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            StreamInfo info = readFromDisk(videoId, now);
+            if (info != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                info = loader.load(videoId);
+                writeToDisk(videoId, info);
+            }
+            created.expiresAt = expiresAt(info);
+            created.future.complete(info);
+
+            if (created.isExpired(System.currentTimeMillis())) {
+                entries.remove(videoId, created);
+            } else if (entries.size() > maxEntries) {
+                trim();
+            }
+            return info;
+        } catch (ExtractionException | IOException | RuntimeException | Error e) {
+            entries.remove(videoId, created);
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return Hit, miss, disk hit and coalesced request counters plus the number of entries in memory.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("hits", hits.get());
+        map.put("misses", misses.get());
+        map.put("diskHits", diskHits.get());
+        map.put("coalesced", coalesced.get());
+        map.put("entries", entries.size());
+        return map;
+    }
+
+    /**
+     * Computes when an extracted result stops being usable.
+     *
+     * @param info The extracted stream information.
+     * @return Epoch milliseconds, already reduced by the safety margin, or 0 if no stream URL is signed.
+     */
+    static long expiresAt(StreamInfo info) {
+        List<String> urls = new ArrayList<>();
+        addContents(urls, info.getVideoStreams());
+        addContents(urls, info.getAudioStreams());
+        addContents(urls, info.getVideoOnlyStreams());
+        urls.add(info.getHlsUrl());
+        urls.add(info.getDashMpdUrl());
+
+        long earliest = Long.MAX_VALUE;
+        for (String url : urls) {
+            if (url == null) {
+                continue;
+            }
+            Matcher matcher = EXPIRE.matcher(url);
+            if (matcher.find()) {
+                earliest = Math.min(earliest, Long.parseLong(matcher.group(1)) * 1000);
+            }
+        }
+        return earliest == Long.MAX_VALUE ? 0 : earliest - EXPIRY_MARGIN_MS;
+    }
+
+    private static void addContents(List<String> urls, @Nullable List<? extends Stream> streams) {
+        if (streams == null) {
+            return;
+        }
+        for (Stream stream : streams) {
+            if (stream.isUrl()) {
+                urls.add(stream.getContent());
+            }
+            urls.add(stream.getManifestUrl());
+        }
+    }
+
+    private static StreamInfo await(Entry entry) throws ExtractionException, IOException {
+        try {
+            return entry.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for extraction", e);
+        } catch (CancellationException e) {
+            throw new IOException("Extraction cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExtractionException) {
+                throw (ExtractionException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Drops expired entries and, if still over capacity, the ones expiring soonest.
+     */
+    private void trim() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().future.isDone() && e.getValue().isExpired(now));
+
+        while (entries.size() > maxEntries) {
+            String victim = null;
+            long victimExpiry = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().future.isDone() && e.getValue().expiresAt < victimExpiry) {
+                    victim = e.getKey();
+                    victimExpiry = e.getValue().expiresAt;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            entries.remove(victim);
+        }
+    }
+
+    @Nullable
+    private Path diskFile(String videoId) {
+        if (directory == null) {
+            return null;
+        }
+        // Video IDs are URL-safe base64, but guard against arbitrary input anyway
+        return directory.resolve(videoId.replaceAll("[^A-Za-z0-9_-]", "_") + ".info");
+    }
+
+    @Nullable
+    private StreamInfo readFromDisk(String videoId, long now) {
+        Path file = diskFile(videoId);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            in.setObjectInputFilter(FILTER);
+            if (in.readLong() <= now) {
+                return null;
+            }
+            return (StreamInfo) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException | LinkageError e) {
+            // Unreadable entries are treated as misses and overwritten later. LinkageError covers
+            // classes missing from the native image serialization metadata.
+            return null;
+        }
+    }
+
+    private void writeToDisk(String videoId, StreamInfo info) {
+        Path file = diskFile(videoId);
+        long expiresAt = expiresAt(info);
+        if (file == null || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(expiresAt);
+                out.writeObject(info);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | LinkageError e) {
+            // Persisting is best effort
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Leftover temporary files are harmless
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonSink;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks streams of an extracted video by an expression such as
+ * {@code audio:best(bitrate) codec=opus} or {@code video:height<=720 fps<=30 prefer=av1}.
+ * <p>
+ * An expression starts with the kind of stream, {@code audio}, {@code video} (video-only and
+ * muxed), {@code videoonly} or {@code muxed}, followed by space-separated terms:
+ * <ul>
+ *     <li>{@code field<op>value} keeps streams matching the comparison, with {@code op} one of
+ *     {@code = != < <= > >=}. Strings compare case-insensitively; {@code codec} also matches a
+ *     prefix ({@code avc1}) or a codec family ({@code av1}, {@code h264}, {@code vp9},
+ *     {@code aac}, {@code opus}).</li>
+ *     <li>{@code best(field)} and {@code worst(field)} rank by a numeric field; several are
+ *     applied in order.</li>
+ *     <li>{@code prefer=a,b} (or {@code a|b}) ranks streams of the listed codec families first
+ *     among streams of equal rank: after height and fps but before bitrate by default, after
+ *     all of {@code best} and {@code worst} when they are given.</li>
+ *     <li>{@code limit=n} emits the n best streams instead of one; {@code limit=0} emits all.</li>
+ * </ul>
+ * Without {@code best} or {@code worst}, video is ranked by height, fps and bitrate, audio by
+ * bitrate. Fields are named as in {@link Convert}, plus {@code format} (the file suffix),
+ * {@code language} (the language tag of an audio track) and {@code avgBitrate}. The video
+ * fields {@code width}, {@code height}, {@code fps}, {@code resolution} and
+ * {@code isVideoOnly} are rejected for audio.
+ */
+public final class StreamSelector {
+
+    /**
+     * The stream fields emitted unless {@code --fields} says otherwise: enough to play the stream
+     * without the nested itagItem.
+     */
+    public static final Fields DEFAULT_FIELDS = Fields.parse(List.of(
+            "content,isUrl,manifestUrl,deliveryMethod,mediaFormat,itag,bitrate,codec,quality",
+            "resolution,width,height,fps,isVideoOnly,audioTrackId,audioTrackName,audioLocale"));
+
+    private static final Set<String> NUMERIC_FIELDS = Set.of(
+            "itag", "bitrate", "avgBitrate", "width", "height", "fps", "sampleRate", "audioChannels", "contentLength");
+    private static final Set<String> STRING_FIELDS = Set.of(
+            "codec", "format", "mediaFormat", "resolution", "quality", "deliveryMethod",
+            "audioTrackId", "audioTrackName", "audioTrackType", "language", "isVideoOnly");
+    private static final Set<String> VIDEO_FIELDS = Set.of("width", "height", "fps", "resolution", "isVideoOnly");
+
+    private static final Pattern RANK = Pattern.compile("(best|worst)\\((\\w+)\\)");
+    private static final Pattern FILTER = Pattern.compile("(\\w+)(<=|>=|!=|=|<|>)(.+)");
+
+    private enum Kind {
+        AUDIO, VIDEO, VIDEOONLY, MUXED
+    }
+
+    private final String expression;
+    private final Kind kind;
+    private final List<Predicate<Stream>> filters = new ArrayList<>();
+    private final List<String> preferred = new ArrayList<>();
+    private Comparator<Stream> order;
+    private int limit = 1;
+
+    private StreamSelector(String expression, Kind kind) {
+        this.expression = expression;
+        this.kind = kind;
+    }
+
+    /**
+     * Parses a selection expression.
+     *
+     * @param expression The expression, see the class documentation.
+     * @return The parsed selector.
+     * @throws IllegalArgumentException If the expression is malformed or names an unknown field.
+     */
+    public static StreamSelector parse(String expression) {
+        String trimmed = expression.trim();
+        int colon = trimmed.indexOf(':');
+        String kindName = colon >= 0 ? trimmed.substring(0, colon) : trimmed;
+        Kind kind;
+        try {
+            kind = Kind.valueOf(kindName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown stream kind in selection: " + kindName);
+        }
+
+        StreamSelector selector = new StreamSelector(trimmed, kind);
+        Comparator<Stream> order = null;
+        String terms = colon >= 0 ? trimmed.substring(colon + 1).trim() : "";
+        for (String term : terms.isEmpty() ? new String[0] : terms.split("\\s+")) {
+            Matcher rank = RANK.matcher(term);
+            Matcher filter = FILTER.matcher(term);
+            if (rank.matches()) {
+                Comparator<Stream> next = numeric(requireNumeric(requireApplicable(kind, rank.group(2))));
+                next = rank.group(1).equals("best") ? next.reversed() : next;
+                order = order == null ? next : order.thenComparing(next);
+            } else if (term.startsWith("prefer=")) {
+                for (String codec : term.substring(7).split("[,|]")) {
+                    selector.preferred.add(codecFamily(codec));
+                }
+            } else if (term.startsWith("limit=")) {
+                selector.limit = Integer.parseInt(term.substring(6));
+            } else if (filter.matches()) {
+                selector.filters.add(filter(requireApplicable(kind, filter.group(1)), filter.group(2), filter.group(3)));
+            } else {
+                throw new IllegalArgumentException("Invalid selection term: " + term);
+            }
+        }
+
+        // Bitrates practically never tie, so the codec preference goes before them: a preferred
+        // codec is usually the more efficient one and needs less bitrate for the same picture
+        Comparator<Stream> preference = Comparator.comparingInt(selector::preferenceRank);
+        Comparator<Stream> bitrate = numeric("bitrate").reversed();
+        Comparator<Stream> defaults = kind == Kind.AUDIO
+                ? preference.thenComparing(bitrate)
+                : numeric("height").reversed().thenComparing(numeric("fps").reversed()).thenComparing(preference).thenComparing(bitrate);
+        selector.order = order == null ? defaults : order.thenComparing(defaults);
+        return selector;
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    /**
+     * @param info The extracted video.
+     * @return The matching streams, best first, at most as many as the limit.
+     */
+    public List<Stream> select(StreamInfo info) {
+        List<Stream> candidates = new ArrayList<>();
+        switch (kind) {
+            case AUDIO -> candidates.addAll(info.getAudioStreams());
+            case VIDEO -> {
+                candidates.addAll(info.getVideoOnlyStreams());
+                candidates.addAll(info.getVideoStreams());
+            }
+            case VIDEOONLY -> candidates.addAll(info.getVideoOnlyStreams());
+            case MUXED -> candidates.addAll(info.getVideoStreams());
+        }
+
+        Predicate<Stream> matches = filters.stream().reduce(stream -> true, Predicate::and);
+        java.util.stream.Stream<Stream> selected = candidates.stream().filter(matches).sorted(order);
+        return (limit > 0 ? selected.limit(limit) : selected).toList();
+    }
+
+    /**
+     * Writes {@code {"id": ..., "selected": [{"expression": ..., "streams": [...]}, ...]}} with one
+     * entry per selector.
+     */
+    public static void write(JsonSink<?> out, @Nullable String key, Fields fields, StreamInfo info,
+                             List<StreamSelector> selectors) {
+        StreamingConvert.openObject(out, key);
+        out.value("id", info.getId());
+        out.array("selected");
+        for (StreamSelector selector : selectors) {
+            out.object();
+            out.value("expression", selector.expression);
+            out.array("streams");
+            for (Stream stream : selector.select(info)) {
+                if (stream instanceof VideoStream) {
+                    StreamingConvert.videoStream(out, null, fields, (VideoStream) stream);
+                } else if (stream instanceof AudioStream) {
+                    StreamingConvert.audioStream(out, null, fields, (AudioStream) stream);
+                }
+            }
+            out.end();
+            out.end();
+        }
+        out.end();
+        out.end();
+    }
+
+    private int preferenceRank(Stream stream) {
+        Object codec = value(stream, "codec");
+        int index = codec != null ? preferred.indexOf(codecFamily(codec.toString())) : -1;
+        return index >= 0 ? index : preferred.size();
+    }
+
+    private static Predicate<Stream> filter(String field, String op, String expected) {
+        if (NUMERIC_FIELDS.contains(field)) {
+            double bound = Double.parseDouble(expected);
+            return stream -> {
+                Object value = value(stream, field);
+                if (!(value instanceof Number)) {
+                    return op.equals("!=");
+                }
+                int cmp = Double.compare(((Number) value).doubleValue(), bound);
+                return switch (op) {
+                    case "<" -> cmp < 0;
+                    case "<=" -> cmp <= 0;
+                    case ">" -> cmp > 0;
+                    case ">=" -> cmp >= 0;
+                    case "!=" -> cmp != 0;
+                    default -> cmp == 0;
+                };
+            };
+        }
+        if (!STRING_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Unknown stream field in selection: " + field);
+        }
+        if (!op.equals("=") && !op.equals("!=")) {
+            throw new IllegalArgumentException("Only = and != apply to " + field);
+        }
+        Predicate<Stream> equals = stream -> {
+            Object value = value(stream, field);
+            if (value == null) {
+                return false;
+            }
+            String actual = value.toString();
+            if (field.equals("codec")) {
+                return actual.toLowerCase(Locale.ROOT).startsWith(expected.toLowerCase(Locale.ROOT))
+                        || codecFamily(actual).equals(codecFamily(expected));
+            }
+            if (field.equals("language")) {
+                // "de" matches "de" as well as "de-DE"
+                return actual.equalsIgnoreCase(expected)
+                        || actual.toLowerCase(Locale.ROOT).startsWith(expected.toLowerCase(Locale.ROOT) + "-");
+            }
+            return actual.equalsIgnoreCase(expected);
+        };
+        return op.equals("=") ? equals : equals.negate();
+    }
+
+    private static String requireApplicable(Kind kind, String field) {
+        if (kind == Kind.AUDIO && VIDEO_FIELDS.contains(field)) {
+            throw new IllegalArgumentException(field + " does not apply to audio streams");
+        }
+        return field;
+    }
+
+    private static String requireNumeric(String field) {
+        if (!NUMERIC_FIELDS.contains(field)) {
+            throw new IllegalArgumentException("Cannot rank by " + field + ", expected one of " + NUMERIC_FIELDS);
+        }
+        return field;
+    }
+
+    // Streams lacking the field sort as lowest
+    private static Comparator<Stream> numeric(String field) {
+        return Comparator.comparingDouble(stream -> {
+            Object value = value(stream, field);
+            return value instanceof Number ? ((Number) value).doubleValue() : Double.NEGATIVE_INFINITY;
+        });
+    }
+
+    /**
+     * Maps codec strings such as {@code av01.0.08M.08} or {@code avc1.64002a} and aliases such as
+     * {@code avc} to one family name.
+     */
+    static String codecFamily(String codec) {
+        String c = codec.trim().toLowerCase(Locale.ROOT);
+        if (c.startsWith("av01") || c.equals("av1")) {
+            return "av1";
+        } else if (c.startsWith("avc") || c.equals("h264")) {
+            return "h264";
+        } else if (c.startsWith("vp09") || c.startsWith("vp9")) {
+            return "vp9";
+        } else if (c.startsWith("mp4a") || c.equals("aac")) {
+            return "aac";
+        } else if (c.startsWith("ec-3") || c.equals("eac3")) {
+            return "eac3";
+        } else if (c.startsWith("ac-3") || c.equals("ac3")) {
+            return "ac3";
+        }
+        return c;
+    }
+
+    @Nullable
+    private static Object value(Stream stream, String field) {
+        ItagItem itag = stream.getItagItem();
+        switch (field) {
+            case "format":
+                return stream.getFormat() != null ? stream.getFormat().getSuffix() : null;
+            case "mediaFormat":
+                return stream.getFormat() != null ? stream.getFormat().getName() : null;
+            case "deliveryMethod":
+                return stream.getDeliveryMethod().name();
+            case "sampleRate":
+                return itag != null ? itag.getSampleRate() : null;
+            case "audioChannels":
+                return itag != null ? itag.getAudioChannels() : null;
+            case "contentLength":
+                return itag != null ? itag.getContentLength() : null;
+            default:
+                break;
+        }
+
+        if (stream instanceof VideoStream) {
+            VideoStream v = (VideoStream) stream;
+            return switch (field) {
+                case "itag" -> v.getItag();
+                case "bitrate" -> v.getBitrate();
+                case "width" -> v.getWidth();
+                case "height" -> v.getHeight();
+                case "fps" -> v.getFps();
+                case "codec" -> v.getCodec();
+                case "resolution" -> v.getResolution();
+                case "quality" -> v.getQuality();
+                case "isVideoOnly" -> String.valueOf(v.isVideoOnly());
+                default -> null;
+            };
+        } else if (stream instanceof AudioStream) {
+            AudioStream a = (AudioStream) stream;
+            return switch (field) {
+                case "itag" -> a.getItag();
+                case "bitrate" -> a.getBitrate();
+                case "avgBitrate" -> a.getAverageBitrate();
+                case "codec" -> a.getCodec();
+                case "quality" -> a.getQuality();
+                case "audioTrackId" -> a.getAudioTrackId();
+                case "audioTrackName" -> a.getAudioTrackName();
+                case "audioTrackType" -> a.getAudioTrackType() != null ? a.getAudioTrackType().name() : null;
+                case "language" -> a.getAudioLocale() != null ? a.getAudioLocale().toLanguageTag() : null;
+                default -> null;
+            };
+        }
+        return null;
+    }
+}
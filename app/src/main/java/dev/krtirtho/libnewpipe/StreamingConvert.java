@@ -0,0 +1,627 @@
+package dev.krtirtho.libnewpipe;
+
+import com.grack.nanojson.JsonSink;
+
+import org.jetbrains.annotations.Nullable;
+import org.schabi.newpipe.extractor.Image;
+import org.schabi.newpipe.extractor.InfoItem;
+import org.schabi.newpipe.extractor.channel.ChannelInfoItem;
+import org.schabi.newpipe.extractor.localization.DateWrapper;
+import org.schabi.newpipe.extractor.playlist.PlaylistInfoItem;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.Description;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamInfoItem;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Writes NewPipe Extractor objects straight to a {@link JsonSink}, producing the same JSON shape
+ * as serializing the Maps built by {@link Convert}, without allocating those Maps or an
+ * intermediate document string.
+ * <p>
+ * Every method takes the key to write the value under, or null when the value is an array
+ * element or the top-level document, and the {@link Fields} projection to apply to the value.
+ * Unselected fields are skipped before their getters are called.
+ */
+public final class StreamingConvert {
+
+    /**
+     * A value that knows how to write itself, used to pass results around without building them first.
+     */
+    @FunctionalInterface
+    public interface Emitter {
+        void write(JsonSink<?> out, @Nullable String key);
+    }
+
+    // Prevent instantiation for a utility class
+    private StreamingConvert() {
+    }
+
+    /**
+     * Writes a list of Image objects, see {@link Convert#thumbnailMap(List)}.
+     */
+    public static void thumbnails(JsonSink<?> out, @Nullable String key, Fields fields, @Nullable List<Image> thumbnails) {
+        openArray(out, key);
+        if (thumbnails != null) {
+            for (Image it : thumbnails) {
+                out.object();
+                if (fields.has("url")) {
+                    out.value("url", it.getUrl());
+                }
+                if (fields.has("width")) {
+                    out.value("width", it.getWidth());
+                }
+                if (fields.has("height")) {
+                    out.value("height", it.getHeight());
+                }
+                out.end();
+            }
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a DateWrapper object, see {@link Convert#dateWrapperMap(DateWrapper)}.
+     */
+    public static void dateWrapper(JsonSink<?> out, @Nullable String key, Fields fields, @Nullable DateWrapper date) {
+        if (date == null) {
+            nul(out, key);
+            return;
+        }
+        openObject(out, key);
+        if (fields.has("offsetDateTime")) {
+            out.value("offsetDateTime", date.offsetDateTime().truncatedTo(ChronoUnit.SECONDS).toEpochSecond());
+        }
+        if (fields.has("isApproximation")) {
+            out.value("isApproximation", date.isApproximation());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a Description object, see {@link Convert#descriptionMap(Description)}.
+     */
+    public static void description(JsonSink<?> out, @Nullable String key, Fields fields, @Nullable Description d) {
+        if (d == null) {
+            nul(out, key);
+            return;
+        }
+        openObject(out, key);
+        if (fields.has("content")) {
+            out.value("content", d.getContent());
+        }
+        if (fields.has("type")) {
+            out.value("type", d.getType());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes an ItagItem object, see {@link Convert#itagItemMap(ItagItem)}.
+     */
+    public static void itagItem(JsonSink<?> out, @Nullable String key, Fields fields, @Nullable ItagItem v) {
+        if (v == null) {
+            nul(out, key);
+            return;
+        }
+        openObject(out, key);
+        if (fields.has("mediaFormat")) {
+            out.value("mediaFormat", v.getMediaFormat() != null ? v.getMediaFormat().name : null);
+        }
+        if (fields.has("id")) {
+            out.value("id", v.id);
+        }
+        if (fields.has("itagType")) {
+            out.value("itagType", v.itagType != null ? v.itagType.name() : null);
+        }
+        if (fields.has("avgBitrate")) {
+            out.value("avgBitrate", v.getAverageBitrate());
+        }
+        if (fields.has("sampleRate")) {
+            out.value("sampleRate", v.getSampleRate());
+        }
+        if (fields.has("audioChannels")) {
+            out.value("audioChannels", v.getAudioChannels());
+        }
+        if (fields.has("resolutionString")) {
+            out.value("resolutionString", v.getResolutionString());
+        }
+        if (fields.has("fps")) {
+            out.value("fps", v.getFps());
+        }
+        if (fields.has("bitrate")) {
+            out.value("bitrate", v.getBitrate());
+        }
+        if (fields.has("width")) {
+            out.value("width", v.getWidth());
+        }
+        if (fields.has("height")) {
+            out.value("height", v.getHeight());
+        }
+        if (fields.has("initStart")) {
+            out.value("initStart", v.getInitStart());
+        }
+        if (fields.has("initEnd")) {
+            out.value("initEnd", v.getInitEnd());
+        }
+        if (fields.has("indexStart")) {
+            out.value("indexStart", v.getIndexStart());
+        }
+        if (fields.has("indexEnd")) {
+            out.value("indexEnd", v.getIndexEnd());
+        }
+        if (fields.has("quality")) {
+            out.value("quality", v.getQuality());
+        }
+        if (fields.has("codec")) {
+            out.value("codec", v.getCodec());
+        }
+        if (fields.has("targetDurationSec")) {
+            out.value("targetDurationSec", v.getTargetDurationSec());
+        }
+        if (fields.has("approxDurationMs")) {
+            out.value("approxDurationMs", v.getApproxDurationMs());
+        }
+        if (fields.has("contentLength")) {
+            out.value("contentLength", v.getContentLength());
+        }
+        if (fields.has("audioTrackId")) {
+            out.value("audioTrackId", v.getAudioTrackId());
+        }
+        if (fields.has("audioTrackName")) {
+            out.value("audioTrackName", v.getAudioTrackName());
+        }
+        if (fields.has("audioTrackType")) {
+            out.value("audioTrackType", v.getAudioTrackType() != null ? v.getAudioTrackType().name() : null);
+        }
+        if (fields.has("audioLocale") && v.getAudioLocale() != null) {
+            out.value("audioLocale", v.getAudioLocale().getDisplayName());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes the base Stream fields into the currently open object, see {@link Convert#streamMap(Stream)}.
+     */
+    private static void streamFields(JsonSink<?> out, Fields fields, Stream v) {
+        if (fields.has("id")) {
+            out.value("id", v.getId());
+        }
+        if (fields.has("mediaFormat")) {
+            out.value("mediaFormat", v.getFormat() != null ? v.getFormat().name : null);
+        }
+        if (fields.has("content")) {
+            out.value("content", v.getContent());
+        }
+        if (fields.has("isUrl")) {
+            out.value("isUrl", v.isUrl());
+        }
+        if (fields.has("deliveryMethod")) {
+            out.value("deliveryMethod", v.getDeliveryMethod().name());
+        }
+        if (fields.has("manifestUrl")) {
+            out.value("manifestUrl", v.getManifestUrl());
+        }
+    }
+
+    /**
+     * Writes a VideoStream object, see {@link Convert#videoStreamMap(VideoStream)}.
+     */
+    public static void videoStream(JsonSink<?> out, @Nullable String key, Fields fields, VideoStream v) {
+        openObject(out, key);
+        streamFields(out, fields, v);
+        if (fields.has("resolution")) {
+            out.value("resolution", v.getResolution());
+        }
+        if (fields.has("isVideoOnly")) {
+            out.value("isVideoOnly", v.isVideoOnly());
+        }
+        if (fields.has("itag")) {
+            out.value("itag", v.getItag());
+        }
+        if (fields.has("bitrate")) {
+            out.value("bitrate", v.getBitrate());
+        }
+        if (fields.has("initStart")) {
+            out.value("initStart", v.getInitStart());
+        }
+        if (fields.has("initEnd")) {
+            out.value("initEnd", v.getInitEnd());
+        }
+        if (fields.has("indexStart")) {
+            out.value("indexStart", v.getIndexStart());
+        }
+        if (fields.has("indexEnd")) {
+            out.value("indexEnd", v.getIndexEnd());
+        }
+        if (fields.has("width")) {
+            out.value("width", v.getWidth());
+        }
+        if (fields.has("height")) {
+            out.value("height", v.getHeight());
+        }
+        if (fields.has("fps")) {
+            out.value("fps", v.getFps());
+        }
+        if (fields.has("quality")) {
+            out.value("quality", v.getQuality());
+        }
+        if (fields.has("codec")) {
+            out.value("codec", v.getCodec());
+        }
+        if (fields.has("itagItem")) {
+            itagItem(out, "itagItem", fields.child("itagItem"), v.getItagItem());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes an AudioStream object, see {@link Convert#audioStreamMap(AudioStream)}.
+     */
+    public static void audioStream(JsonSink<?> out, @Nullable String key, Fields fields, AudioStream v) {
+        openObject(out, key);
+        streamFields(out, fields, v);
+        if (fields.has("itag")) {
+            out.value("itag", v.getItag());
+        }
+        if (fields.has("bitrate")) {
+            out.value("bitrate", v.getBitrate());
+        }
+        if (fields.has("initStart")) {
+            out.value("initStart", v.getInitStart());
+        }
+        if (fields.has("initEnd")) {
+            out.value("initEnd", v.getInitEnd());
+        }
+        if (fields.has("indexStart")) {
+            out.value("indexStart", v.getIndexStart());
+        }
+        if (fields.has("indexEnd")) {
+            out.value("indexEnd", v.getIndexEnd());
+        }
+        if (fields.has("quality")) {
+            out.value("quality", v.getQuality());
+        }
+        if (fields.has("codec")) {
+            out.value("codec", v.getCodec());
+        }
+        if (fields.has("audioTrackId")) {
+            out.value("audioTrackId", v.getAudioTrackId());
+        }
+        if (fields.has("audioTrackName")) {
+            out.value("audioTrackName", v.getAudioTrackName());
+        }
+        if (fields.has("audioLocale") && v.getAudioLocale() != null) {
+            out.value("audioLocale", v.getAudioLocale().getDisplayName());
+        }
+        if (fields.has("audioTrackType")) {
+            out.value("audioTrackType", v.getAudioTrackType() != null ? v.getAudioTrackType().name() : null);
+        }
+        if (fields.has("itagItem")) {
+            itagItem(out, "itagItem", fields.child("itagItem"), v.getItagItem());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a StreamInfo object, see {@link Convert#streamInfoMap(StreamInfo)}.
+     */
+    public static void streamInfo(JsonSink<?> out, @Nullable String key, Fields fields, StreamInfo streamInfo) {
+        openObject(out, key);
+        if (fields.has("id")) {
+            out.value("id", streamInfo.getId());
+        }
+        if (fields.has("url")) {
+            out.value("url", streamInfo.getUrl());
+        }
+        if (fields.has("originalUrl")) {
+            out.value("originalUrl", streamInfo.getOriginalUrl());
+        }
+        if (fields.has("name")) {
+            out.value("name", streamInfo.getName());
+        }
+        if (fields.has("streamType")) {
+            out.value("streamType", streamInfo.getStreamType() != null ? streamInfo.getStreamType().name() : null);
+        }
+        if (fields.has("thumbnails")) {
+            thumbnails(out, "thumbnails", fields.child("thumbnails"), streamInfo.getThumbnails());
+        }
+        if (fields.has("textualUploadDate")) {
+            out.value("textualUploadDate", streamInfo.getTextualUploadDate());
+        }
+        if (fields.has("uploadDate")) {
+            dateWrapper(out, "uploadDate", fields.child("uploadDate"), streamInfo.getUploadDate());
+        }
+        if (fields.has("duration")) {
+            out.value("duration", streamInfo.getDuration());
+        }
+        if (fields.has("ageLimit")) {
+            out.value("ageLimit", streamInfo.getAgeLimit());
+        }
+        if (fields.has("description")) {
+            description(out, "description", fields.child("description"), streamInfo.getDescription());
+        }
+        if (fields.has("viewCount")) {
+            out.value("viewCount", streamInfo.getViewCount());
+        }
+        if (fields.has("likeCount")) {
+            out.value("likeCount", streamInfo.getLikeCount());
+        }
+        if (fields.has("dislikeCount")) {
+            out.value("dislikeCount", streamInfo.getDislikeCount());
+        }
+        if (fields.has("uploaderName")) {
+            out.value("uploaderName", streamInfo.getUploaderName());
+        }
+        if (fields.has("uploaderUrl")) {
+            out.value("uploaderUrl", streamInfo.getUploaderUrl());
+        }
+        if (fields.has("uploaderAvatars")) {
+            thumbnails(out, "uploaderAvatars", fields.child("uploaderAvatars"), streamInfo.getUploaderAvatars());
+        }
+        if (fields.has("uploaderVerified")) {
+            out.value("uploaderVerified", streamInfo.isUploaderVerified());
+        }
+        if (fields.has("uploaderSubscriberCount")) {
+            out.value("uploaderSubscriberCount", streamInfo.getUploaderSubscriberCount());
+        }
+        if (fields.has("subChannelName")) {
+            out.value("subChannelName", streamInfo.getSubChannelName());
+        }
+        if (fields.has("subChannelUrl")) {
+            out.value("subChannelUrl", streamInfo.getSubChannelUrl());
+        }
+        if (fields.has("subChannelAvatars")) {
+            thumbnails(out, "subChannelAvatars", fields.child("subChannelAvatars"), streamInfo.getSubChannelAvatars());
+        }
+
+        if (fields.has("videoStreams")) {
+            Fields child = fields.child("videoStreams");
+            out.array("videoStreams");
+            for (VideoStream stream : streamInfo.getVideoStreams()) {
+                videoStream(out, null, child, stream);
+            }
+            out.end();
+        }
+        if (fields.has("audioStreams")) {
+            Fields child = fields.child("audioStreams");
+            out.array("audioStreams");
+            for (AudioStream stream : streamInfo.getAudioStreams()) {
+                audioStream(out, null, child, stream);
+            }
+            out.end();
+        }
+        if (fields.has("videoOnlyStreams")) {
+            Fields child = fields.child("videoOnlyStreams");
+            out.array("videoOnlyStreams");
+            for (VideoStream stream : streamInfo.getVideoOnlyStreams()) {
+                videoStream(out, null, child, stream);
+            }
+            out.end();
+        }
+
+        if (fields.has("dashMpdUrl")) {
+            out.value("dashMpdUrl", streamInfo.getDashMpdUrl());
+        }
+        if (fields.has("hlsUrl")) {
+            out.value("hlsUrl", streamInfo.getHlsUrl());
+        }
+        if (fields.has("relatedItems")) {
+            Fields child = fields.child("relatedItems");
+            out.array("relatedItems");
+            for (InfoItem item : streamInfo.getRelatedItems()) {
+                infoItemInternal(out, null, child, item);
+            }
+            out.end();
+        }
+        if (fields.has("startPosition")) {
+            out.value("startPosition", streamInfo.getStartPosition());
+        }
+        if (fields.has("host")) {
+            out.value("host", streamInfo.getHost());
+        }
+        if (fields.has("category")) {
+            out.value("category", streamInfo.getCategory());
+        }
+        if (fields.has("licence")) {
+            out.value("licence", streamInfo.getLicence());
+        }
+        if (fields.has("supportInfo")) {
+            out.value("supportInfo", streamInfo.getSupportInfo());
+        }
+        if (fields.has("language") && streamInfo.getLanguageInfo() != null) {
+            out.value("language", streamInfo.getLanguageInfo().getDisplayName());
+        }
+        if (fields.has("tags")) {
+            if (streamInfo.getTags() != null) {
+                out.array("tags", streamInfo.getTags());
+            } else {
+                out.nul("tags");
+            }
+        }
+        if (fields.has("shortFormContent")) {
+            out.value("shortFormContent", streamInfo.isShortFormContent());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes the base InfoItem fields into the currently open object.
+     */
+    private static void infoItemFields(JsonSink<?> out, Fields fields, InfoItem item) {
+        if (fields.has("infoType")) {
+            out.value("infoType", item.getInfoType() != null ? item.getInfoType().name() : null);
+        }
+        if (fields.has("url")) {
+            out.value("url", item.getUrl());
+        }
+        if (fields.has("name")) {
+            out.value("name", item.getName());
+        }
+        if (fields.has("thumbnails")) {
+            thumbnails(out, "thumbnails", fields.child("thumbnails"), item.getThumbnails());
+        }
+    }
+
+    private static void infoItemInternal(JsonSink<?> out, @Nullable String key, Fields fields, InfoItem item) {
+        openObject(out, key);
+        infoItemFields(out, fields, item);
+        out.end();
+    }
+
+    /**
+     * Writes a PlaylistInfoItem object, see {@link Convert#playlistInfoItemMap(PlaylistInfoItem)}.
+     */
+    public static void playlistInfoItem(JsonSink<?> out, @Nullable String key, Fields fields, PlaylistInfoItem info) {
+        openObject(out, key);
+        infoItemFields(out, fields, info);
+        if (fields.has("uploaderName")) {
+            out.value("uploaderName", info.getUploaderName());
+        }
+        if (fields.has("uploaderUrl")) {
+            out.value("uploaderUrl", info.getUploaderUrl());
+        }
+        if (fields.has("uploaderVerified")) {
+            out.value("uploaderVerified", info.isUploaderVerified());
+        }
+        if (fields.has("streamCount")) {
+            out.value("streamCount", info.getStreamCount());
+        }
+        if (fields.has("description")) {
+            description(out, "description", fields.child("description"), info.getDescription());
+        }
+        if (fields.has("playlistType")) {
+            out.value("playlistType", info.getPlaylistType() != null ? info.getPlaylistType().name() : null);
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a ChannelInfoItem object, see {@link Convert#channelInfoItemMap(ChannelInfoItem)}.
+     */
+    public static void channelInfoItem(JsonSink<?> out, @Nullable String key, Fields fields, ChannelInfoItem info) {
+        openObject(out, key);
+        infoItemFields(out, fields, info);
+        if (fields.has("description")) {
+            out.value("description", info.getDescription());
+        }
+        if (fields.has("subscriberCount")) {
+            out.value("subscriberCount", info.getSubscriberCount());
+        }
+        if (fields.has("streamCount")) {
+            out.value("streamCount", info.getStreamCount());
+        }
+        if (fields.has("verified")) {
+            out.value("verified", info.isVerified());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a StreamInfoItem object, see {@link Convert#streamInfoItemMap(StreamInfoItem)}.
+     */
+    public static void streamInfoItem(JsonSink<?> out, @Nullable String key, Fields fields, StreamInfoItem info) {
+        openObject(out, key);
+        infoItemFields(out, fields, info);
+        if (fields.has("streamType")) {
+            out.value("streamType", info.getStreamType() != null ? info.getStreamType().name() : null);
+        }
+        if (fields.has("uploaderName")) {
+            out.value("uploaderName", info.getUploaderName());
+        }
+        if (fields.has("shortDescription")) {
+            out.value("shortDescription", info.getShortDescription());
+        }
+        if (fields.has("textualUploadDate")) {
+            out.value("textualUploadDate", info.getTextualUploadDate());
+        }
+        if (fields.has("uploadDate")) {
+            dateWrapper(out, "uploadDate", fields.child("uploadDate"), info.getUploadDate());
+        }
+        if (fields.has("viewCount")) {
+            out.value("viewCount", info.getViewCount());
+        }
+        if (fields.has("duration")) {
+            out.value("duration", info.getDuration());
+        }
+        if (fields.has("uploaderUrl")) {
+            out.value("uploaderUrl", info.getUploaderUrl());
+        }
+        if (fields.has("uploaderAvatars")) {
+            thumbnails(out, "uploaderAvatars", fields.child("uploaderAvatars"), info.getUploaderAvatars());
+        }
+        if (fields.has("uploaderVerified")) {
+            out.value("uploaderVerified", info.isUploaderVerified());
+        }
+        if (fields.has("shortFormContent")) {
+            out.value("shortFormContent", info.isShortFormContent());
+        }
+        out.end();
+    }
+
+    /**
+     * Writes an InfoItem using the writer for its concrete type, see {@link Convert#infoItemMap(InfoItem)}.
+     */
+    public static void infoItem(JsonSink<?> out, @Nullable String key, Fields fields, InfoItem info) {
+        if (info instanceof PlaylistInfoItem) {
+            playlistInfoItem(out, key, fields, (PlaylistInfoItem) info);
+        } else if (info instanceof StreamInfoItem) {
+            streamInfoItem(out, key, fields, (StreamInfoItem) info);
+        } else if (info instanceof ChannelInfoItem) {
+            channelInfoItem(out, key, fields, (ChannelInfoItem) info);
+        } else {
+            infoItemInternal(out, key, fields, info);
+        }
+    }
+
+    /**
+     * Writes a list of InfoItems as an array, applying the projection to each item.
+     */
+    public static void infoItems(JsonSink<?> out, @Nullable String key, Fields fields, List<? extends InfoItem> items) {
+        openArray(out, key);
+        for (InfoItem item : items) {
+            infoItem(out, null, fields, item);
+        }
+        out.end();
+    }
+
+    /**
+     * Writes a plain value such as a String, Number, Map or List.
+     */
+    public static void value(JsonSink<?> out, @Nullable String key, @Nullable Object value) {
+        if (key == null) {
+            out.value(value);
+        } else {
+            out.value(key, value);
+        }
+    }
+
+    static void openObject(JsonSink<?> out, @Nullable String key) {
+        if (key == null) {
+            out.object();
+        } else {
+            out.object(key);
+        }
+    }
+
+    static void openArray(JsonSink<?> out, @Nullable String key) {
+        if (key == null) {
+            out.array();
+        } else {
+            out.array(key);
+        }
+    }
+
+    static void nul(JsonSink<?> out, @Nullable String key) {
+        if (key == null) {
+            out.nul();
+        } else {
+            out.nul(key);
+        }
+    }
+}
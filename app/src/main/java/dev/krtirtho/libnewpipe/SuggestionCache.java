@@ -0,0 +1,162 @@
+package dev.krtirtho.libnewpipe;
+
+import org.schabi.newpipe.extractor.exceptions.ExtractionException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches search suggestions by normalized prefix, bounded both by age and by entry count.
+ * <p>
+ * Type-ahead clients repeat prefixes constantly (typing, deleting, retyping), so even a short
+ * TTL answers most keystrokes from memory. Concurrent requests for the same prefix share a single
+ * fetch. Expired entries are dropped whenever a new prefix is added, then the least recently used.
+ */
+public final class SuggestionCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 2000;
+    public static final long DEFAULT_TTL_SECONDS = 600;
+
+    /**
+     * Fetches suggestions when the cache cannot answer.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<String> load(String prefix) throws ExtractionException, IOException;
+    }
+
+    private static final class Entry {
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return future.isDone() && expiresAt <= now;
+        }
+    }
+
+    private final long ttlMillis;
+    // Access order turns insertion-ordered eviction into least-recently-used eviction
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param maxEntries The number of prefixes kept.
+     * @param ttlSeconds How long suggestions for a prefix are reused.
+     */
+    public SuggestionCache(int maxEntries, long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Normalizes a prefix so that differences in case and surrounding whitespace share an entry.
+     *
+     * @param prefix The raw prefix.
+     * @return The cache key, which is also what gets sent to the service.
+     */
+    public static String normalize(String prefix) {
+        return prefix.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the cached suggestions for a prefix, or fetches them with the loader. The loader runs
+     * outside the lock, so a slow fetch never blocks lookups of other prefixes, and callers asking
+     * for a prefix that is being fetched wait for that fetch instead of starting their own.
+     *
+     * @param prefix The prefix typed so far.
+     * @param loader Fetches the suggestions on a miss.
+     * @return The suggestions, most relevant first.
+     */
+    public List<String> get(String prefix, Loader loader) throws ExtractionException, IOException {
+        String key = normalize(prefix);
+        Entry entry;
+        Entry created = null;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                (entry.future.isDone() ? hits : coalesced).incrementAndGet();
+            } else {
+                // Expired entries would otherwise keep taking capacity until their prefix comes back
+                entries.values().removeIf(e -> e.isExpired(now));
+                created = new Entry();
+                entries.put(key, created);
+            }
+        }
+        if (created == null) {
+            return await(entry);
+        }
+
+        misses.incrementAndGet();
+        try {
+            List<String> suggestions = List.copyOf(loader.load(key));
+            created.expiresAt = System.currentTimeMillis() + ttlMillis;
+            created.future.complete(suggestions);
+            if (ttlMillis <= 0) {
+                remove(key, created);
+            }
+            return suggestions;
+        } catch (ExtractionException | IOException | RuntimeException | Error e) {
+            remove(key, created);
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return Hit, miss and coalesced request counters plus the number of cached prefixes.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("hits", hits.get());
+        map.put("misses", misses.get());
+        map.put("coalesced", coalesced.get());
+        synchronized (entries) {
+            map.put("entries", entries.size());
+        }
+        return map;
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private static List<String> await(Entry entry) throws ExtractionException, IOException {
+        try {
+            return entry.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for suggestions", e);
+        } catch (CancellationException e) {
+            throw new IOException("Suggestion fetch cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExtractionException) {
+                throw (ExtractionException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
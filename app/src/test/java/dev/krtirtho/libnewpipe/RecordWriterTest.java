@@ -0,0 +1,340 @@
+package dev.krtirtho.libnewpipe;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.grack.nanojson.JsonParser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.IntegerValue;
+import org.msgpack.value.Value;
+import org.schabi.newpipe.extractor.Image;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.AudioTrackType;
+import org.schabi.newpipe.extractor.stream.DeliveryMethod;
+import org.schabi.newpipe.extractor.stream.Description;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that CBOR and MessagePack records carry the same values as the JSON ones, by decoding
+ * them with independent libraries and comparing against the parsed JSON.
+ */
+class RecordWriterTest {
+
+    private static final String VIDEO_ID = "fixture0001";
+    private static final long CONTENT_LENGTH = 5_368_709_120L;
+
+    @ParameterizedTest
+    @EnumSource(value = OutputFormat.class, names = {"CBOR", "MSGPACK"})
+    void streamInfoMatchesJson(OutputFormat format) throws Exception {
+        StreamInfo info = streamInfo();
+        StreamingConvert.Emitter emitter = (out, key) -> StreamingConvert.streamInfo(out, key, Fields.ALL, info);
+
+        List<Object> json = decode(OutputFormat.JSON, write(OutputFormat.JSON, emitter));
+        List<Object> binary = decode(format, write(format, emitter));
+        assertEquals(1, binary.size());
+        assertEquals(normalize(json), normalize(binary));
+
+        Map<?, ?> videoOnly = (Map<?, ?>) ((List<?>) ((Map<?, ?>) normalize(binary.get(0))).get("videoOnlyStreams")).get(0);
+        Map<?, ?> itagItem = (Map<?, ?>) videoOnly.get("itagItem");
+        assertEquals(CONTENT_LENGTH, itagItem.get("contentLength"));
+        assertEquals(-1L, itagItem.get("targetDurationSec"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OutputFormat.class, names = {"CBOR", "MSGPACK"})
+    void valuesMatchJson(OutputFormat format) throws Exception {
+        Map<String, Object> value = values();
+
+        List<Object> json = decode(OutputFormat.JSON, write(OutputFormat.JSON, value));
+        List<Object> binary = decode(format, write(format, value));
+        assertEquals(normalize(json), normalize(binary));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = OutputFormat.class, names = {"CBOR", "MSGPACK"})
+    void nanAndLargeIntegersAreWrittenAsDoubles(OutputFormat format) throws Exception {
+        BigInteger large = BigInteger.ONE.shiftLeft(70).add(BigInteger.valueOf(12_345));
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("nan", Double.NaN);
+        value.put("floatNan", Float.NaN);
+        value.put("large", large);
+        value.put("negativeLarge", large.negate());
+        value.put("smallBigInteger", BigInteger.valueOf(-42));
+        value.put("maxLong", BigInteger.valueOf(Long.MAX_VALUE));
+
+        Map<?, ?> decoded = (Map<?, ?>) normalize(decode(format, write(format, value)).get(0));
+        assertTrue(Double.isNaN((Double) decoded.get("nan")));
+        assertTrue(Double.isNaN((Double) decoded.get("floatNan")));
+        assertEquals(large.doubleValue(), decoded.get("large"));
+        assertEquals(large.negate().doubleValue(), decoded.get("negativeLarge"));
+        assertEquals(-42L, decoded.get("smallBigInteger"));
+        assertEquals(Long.MAX_VALUE, decoded.get("maxLong"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutputFormat.class)
+    void recordsFollowEachOther(OutputFormat format) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RecordWriter writer = new RecordWriter(bytes, format);
+        writer.writeResult(1, (out, key) -> StreamingConvert.value(out, key, List.of("a", "b")));
+        writer.writeError(2, null);
+
+        List<Object> records = normalize(decode(format, bytes.toByteArray()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", 1L);
+        result.put("result", List.of("a", "b"));
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("id", 2L);
+        error.put("error", null);
+        assertEquals(List.of(result, error), records);
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutputFormat.class)
+    void failingEmitterWritesNothingToAtomicRecords(OutputFormat format) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RecordWriter writer = new RecordWriter(bytes, format, true);
+        assertThrows(IllegalStateException.class, () -> writer.write((out, key) -> {
+            StreamingConvert.openObject(out, key);
+            out.value("partial", true);
+            throw new IllegalStateException("emitter failed");
+        }));
+        assertEquals(0, bytes.size());
+
+        writer.write(Map.of("complete", true));
+        assertEquals(List.of(Map.of("complete", true)), decode(format, bytes.toByteArray()));
+    }
+
+    @Test
+    void unsupportedValueIsRejected() {
+        RecordWriter writer = new RecordWriter(new ByteArrayOutputStream(), OutputFormat.CBOR);
+        assertThrows(IllegalArgumentException.class, () -> writer.write(Map.of("locale", Locale.ROOT)));
+    }
+
+    private static byte[] write(OutputFormat format, Object value) throws IOException {
+        return write(format, (out, key) -> StreamingConvert.value(out, key, value));
+    }
+
+    private static byte[] write(OutputFormat format, StreamingConvert.Emitter emitter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new RecordWriter(bytes, format).write(emitter);
+        return bytes.toByteArray();
+    }
+
+    private static List<Object> decode(OutputFormat format, byte[] bytes) throws Exception {
+        List<Object> records = new ArrayList<>();
+        switch (format) {
+            case JSON -> {
+                for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                    records.add(JsonParser.any().from(line));
+                }
+            }
+            case CBOR -> {
+                ObjectMapper mapper = new ObjectMapper(new CBORFactory());
+                try (MappingIterator<Object> values = mapper.readerFor(Object.class).readValues(bytes)) {
+                    records.addAll(values.readAll());
+                }
+            }
+            case MSGPACK -> {
+                try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes)) {
+                    while (unpacker.hasNext()) {
+                        records.add(msgpackValue(unpacker.unpackValue()));
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    private static Object msgpackValue(Value value) {
+        return switch (value.getValueType()) {
+            case NIL -> null;
+            case BOOLEAN -> value.asBooleanValue().getBoolean();
+            case INTEGER -> {
+                IntegerValue integer = value.asIntegerValue();
+                yield integer.isInLongRange() ? integer.toLong() : integer.toBigInteger();
+            }
+            case FLOAT -> value.asFloatValue().toDouble();
+            case STRING -> value.asStringValue().asString();
+            case ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                for (Value element : value.asArrayValue()) {
+                    list.add(msgpackValue(element));
+                }
+                yield list;
+            }
+            case MAP -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (Map.Entry<Value, Value> entry : value.asMapValue().entrySet()) {
+                    map.put(entry.getKey().asStringValue().asString(), msgpackValue(entry.getValue()));
+                }
+                yield map;
+            }
+            default -> throw new AssertionError("Unexpected MessagePack value: " + value);
+        };
+    }
+
+    // The decoders pick different Number classes for the same value, so compare integers as long
+    // and floating point numbers as double
+    @SuppressWarnings("unchecked")
+    private static <T> T normalize(T value) {
+        Object normalized;
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            map.forEach((k, v) -> copy.put(String.valueOf(k), normalize(v)));
+            normalized = copy;
+        } else if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>();
+            list.forEach(element -> copy.add(normalize(element)));
+            normalized = copy;
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            normalized = ((Number) value).doubleValue();
+        } else if (value instanceof BigInteger big && big.bitLength() >= Long.SIZE) {
+            normalized = big;
+        } else if (value instanceof Number number) {
+            normalized = number.longValue();
+        } else {
+            normalized = value;
+        }
+        return (T) normalized;
+    }
+
+    // Every header size of both encodings: small and large integers of both signs, floats that
+    // fit four bytes and ones that need eight, long strings and containers beyond 15 entries
+    private static Map<String, Object> values() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("null", null);
+        value.put("true", true);
+        value.put("false", false);
+        value.put("integers", Arrays.asList(0, 1, 23, 24, 255, 256, 65_535, 65_536, 4_294_967_295L, 4_294_967_296L,
+                Long.MAX_VALUE, -1, -24, -25, -256, -257, -65_536, -65_537, Integer.MIN_VALUE, Long.MIN_VALUE,
+                (short) -7, (byte) 12, BigInteger.valueOf(-99)));
+        value.put("doubles", Arrays.asList(0.5, -2.5, 0.1, 1e300, -1e-300, 3.0, 0.0, 1.5f,
+                Double.MAX_VALUE, Double.MIN_VALUE, new BigDecimal("12.75")));
+        value.put("strings", Arrays.asList("", "a", "ünïcödé ✓ 🎵", "x".repeat(31), "x".repeat(32), "x".repeat(255),
+                "x".repeat(256), "x".repeat(70_000)));
+        value.put("empty", Map.of());
+        value.put("emptyList", List.of());
+        value.put("array", new Object[]{1, "two", null, 3.5});
+
+        List<Object> longList = new ArrayList<>();
+        Map<String, Object> largeMap = new LinkedHashMap<>();
+        for (int i = 0; i < 70_000; i++) {
+            longList.add(i % 3 == 0 ? null : -i);
+            if (i < 40) {
+                largeMap.put("key" + i, i % 2 == 0 ? List.of(i, Map.of("nested", -i)) : i * 0.25);
+            }
+        }
+        value.put("longList", longList);
+        value.put("largeMap", largeMap);
+
+        Map<String, Object> deep = new LinkedHashMap<>();
+        deep.put("level", 0);
+        Map<String, Object> current = deep;
+        for (int i = 1; i < 20; i++) {
+            Map<String, Object> next = new LinkedHashMap<>();
+            next.put("level", i);
+            next.put("values", Arrays.asList(null, List.of(), i));
+            current.put("child", next);
+            current = next;
+        }
+        value.put("deep", deep);
+        return value;
+    }
+
+    // A video with the fields real YouTube output carries: many numeric itag fields, unknown
+    // values stored as -1, contents longer than 32 bits, nulls and nested lists and maps
+    private static StreamInfo streamInfo() throws ParsingException {
+        String url = "https://www.youtube.com/watch?v=" + VIDEO_ID;
+        StreamInfo info = new StreamInfo(0, url, url, StreamType.VIDEO_STREAM, VIDEO_ID, "Fixture video", 18);
+        info.setDuration(11_820);
+        info.setTextualUploadDate("2024-03-14T15:09:26Z");
+        info.setDescription(new Description("<b>Chapters</b><br>0:00 Intro", Description.HTML));
+        info.setViewCount(1_234_567_890_123L);
+        info.setLikeCount(-1);
+        info.setUploaderName("Fixture Channel");
+        info.setThumbnails(List.of(
+                new Image("https://i.ytimg.com/vi/" + VIDEO_ID + "/default.jpg", 90, 120, Image.ResolutionLevel.LOW),
+                new Image("https://i.ytimg.com/vi/" + VIDEO_ID + "/unknown.jpg", Image.HEIGHT_UNKNOWN,
+                        Image.WIDTH_UNKNOWN, Image.ResolutionLevel.UNKNOWN)));
+        info.setTags(List.of("fixture", "test"));
+        info.setHlsUrl(null);
+        info.setDashMpdUrl("");
+
+        ItagItem video = new ItagItem(ItagItem.getItag(137));
+        video.setBitrate(4_500_000);
+        video.setCodec("avc1.640028");
+        video.setWidth(1920);
+        video.setHeight(1080);
+        video.setFps(30);
+        video.setQuality("hd1080");
+        video.setInitStart(0);
+        video.setInitEnd(740);
+        video.setIndexStart(741);
+        video.setIndexEnd(29_000);
+        video.setContentLength(CONTENT_LENGTH);
+        video.setApproxDurationMs(11_820_000L);
+        info.setVideoOnlyStreams(List.of(new VideoStream.Builder()
+                .setId("137")
+                .setContent("https://rr3---sn-fixture.googlevideo.com/videoplayback?itag=137&clen=" + CONTENT_LENGTH, true)
+                .setMediaFormat(MediaFormat.MPEG_4)
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setResolution("1080p")
+                .setIsVideoOnly(true)
+                .setItagItem(video)
+                .build()));
+        info.setVideoStreams(List.of(new VideoStream.Builder()
+                .setId("18")
+                .setContent("https://rr3---sn-fixture.googlevideo.com/videoplayback?itag=18", true)
+                .setMediaFormat(MediaFormat.MPEG_4)
+                .setResolution("360p")
+                .setIsVideoOnly(false)
+                .build()));
+
+        ItagItem audio = new ItagItem(ItagItem.getItag(251));
+        audio.setBitrate(160_000);
+        audio.setCodec("opus");
+        audio.setSampleRate(48_000);
+        audio.setAudioChannels(2);
+        audio.setContentLength(236_400_000L);
+        info.setAudioStreams(List.of(new AudioStream.Builder()
+                .setId("251-de")
+                .setContent("https://rr3---sn-fixture.googlevideo.com/videoplayback?itag=251&xtags=lang%3Dde", true)
+                .setMediaFormat(MediaFormat.WEBMA_OPUS)
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setAverageBitrate(160)
+                .setAudioTrackId("de.4")
+                .setAudioTrackName("Deutsch original")
+                .setAudioLocale(Locale.GERMANY)
+                .setAudioTrackType(AudioTrackType.ORIGINAL)
+                .setItagItem(audio)
+                .build()));
+        return info;
+    }
+}
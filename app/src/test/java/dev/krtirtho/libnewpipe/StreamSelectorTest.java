@@ -0,0 +1,111 @@
+package dev.krtirtho.libnewpipe;
+
+import org.junit.jupiter.api.Test;
+import org.schabi.newpipe.extractor.MediaFormat;
+import org.schabi.newpipe.extractor.exceptions.ParsingException;
+import org.schabi.newpipe.extractor.services.youtube.ItagItem;
+import org.schabi.newpipe.extractor.stream.AudioStream;
+import org.schabi.newpipe.extractor.stream.DeliveryMethod;
+import org.schabi.newpipe.extractor.stream.Stream;
+import org.schabi.newpipe.extractor.stream.StreamInfo;
+import org.schabi.newpipe.extractor.stream.StreamType;
+import org.schabi.newpipe.extractor.stream.VideoStream;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the ranking of {@link StreamSelector}, in particular where codec preference sits
+ * between the default ranks.
+ */
+class StreamSelectorTest {
+
+    @Test
+    void preferredCodecBeatsHigherBitrateAtSameHeightAndFps() throws Exception {
+        StreamInfo info = streamInfo();
+
+        assertEquals("av1-720", first("video:height<=720 fps<=30 prefer=av1", info));
+        assertEquals("avc-720", first("video:height<=720 fps<=30", info));
+    }
+
+    @Test
+    void preferredCodecDoesNotBeatHeightOrFps() throws Exception {
+        StreamInfo info = streamInfo();
+
+        assertEquals("vp9-1080", first("video:prefer=av1", info));
+        assertEquals("avc-720-60", first("video:height<=720 prefer=av1", info));
+    }
+
+    @Test
+    void explicitRanksComeBeforePreference() throws Exception {
+        assertEquals("avc-720", first("video:height<=720 fps<=30 best(bitrate) prefer=av1", streamInfo()));
+    }
+
+    @Test
+    void preferredAudioCodecBeatsHigherBitrate() throws Exception {
+        StreamInfo info = streamInfo();
+
+        assertEquals("aac", first("audio:prefer=aac", info));
+        assertEquals("opus", first("audio", info));
+    }
+
+    @Test
+    void videoFieldsAreRejectedForAudio() {
+        assertThrows(IllegalArgumentException.class, () -> StreamSelector.parse("audio:height>=720"));
+    }
+
+    private static String first(String expression, StreamInfo info) {
+        List<Stream> selected = StreamSelector.parse(expression).select(info);
+        return selected.get(0).getId();
+    }
+
+    private static StreamInfo streamInfo() throws ParsingException {
+        String url = "https://www.youtube.com/watch?v=fixture0002";
+        StreamInfo info = new StreamInfo(0, url, url, StreamType.VIDEO_STREAM, "fixture0002", "Fixture video", 0);
+        info.setVideoOnlyStreams(List.of(
+                video("avc-720", "avc1.4d401f", 720, 30, 2_500_000),
+                video("av1-720", "av01.0.05M.08", 720, 30, 1_300_000),
+                video("avc-720-60", "avc1.4d4020", 720, 60, 3_800_000),
+                video("vp9-1080", "vp9", 1080, 30, 2_700_000)));
+        info.setAudioStreams(List.of(
+                audio("opus", "opus", MediaFormat.WEBMA_OPUS, 160_000),
+                audio("aac", "mp4a.40.2", MediaFormat.M4A, 128_000)));
+        return info;
+    }
+
+    private static VideoStream video(String id, String codec, int height, int fps, int bitrate)
+            throws ParsingException {
+        ItagItem itag = new ItagItem(ItagItem.getItag(136));
+        itag.setCodec(codec);
+        itag.setHeight(height);
+        itag.setWidth(height * 16 / 9);
+        itag.setFps(fps);
+        itag.setBitrate(bitrate);
+        return new VideoStream.Builder()
+                .setId(id)
+                .setContent("https://rr3---sn-fixture.googlevideo.com/videoplayback?id=" + id, true)
+                .setMediaFormat(MediaFormat.MPEG_4)
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setResolution(height + "p")
+                .setIsVideoOnly(true)
+                .setItagItem(itag)
+                .build();
+    }
+
+    private static AudioStream audio(String id, String codec, MediaFormat format, int bitrate)
+            throws ParsingException {
+        ItagItem itag = new ItagItem(ItagItem.getItag(140));
+        itag.setCodec(codec);
+        itag.setBitrate(bitrate);
+        return new AudioStream.Builder()
+                .setId(id)
+                .setContent("https://rr3---sn-fixture.googlevideo.com/videoplayback?id=" + id, true)
+                .setMediaFormat(format)
+                .setDeliveryMethod(DeliveryMethod.PROGRESSIVE_HTTP)
+                .setAverageBitrate(bitrate / 1000)
+                .setItagItem(itag)
+                .build();
+    }
+}